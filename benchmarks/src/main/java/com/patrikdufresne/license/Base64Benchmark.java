@@ -0,0 +1,93 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the {@link Base64} codec.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Base64Benchmark {
+
+    /**
+     * Size of the binary data. 256 and 512 bytes match the signature size of a 2048 and 4096 bits RSA key.
+     */
+    @Param({ "256", "512", "8192" })
+    public int size;
+
+    private byte[] binary;
+
+    private byte[] encoded;
+
+    private String encodedString;
+
+    private byte[] decodeBuffer;
+
+    private byte[] encodeBuffer;
+
+    @Setup
+    public void setup() {
+        binary = new byte[size];
+        new Random(size).nextBytes(binary);
+        encodedString = Base64.encode(binary);
+        encoded = encodedString.getBytes();
+        decodeBuffer = new byte[size];
+        encodeBuffer = new byte[Base64.encodedLength(size)];
+    }
+
+    @Benchmark
+    public String encode() {
+        return Base64.encode(binary);
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        return Base64.decode(encoded);
+    }
+
+    @Benchmark
+    public int encodeIntoBuffer() {
+        return Base64.encode(binary, 0, binary.length, encodeBuffer, 0);
+    }
+
+    @Benchmark
+    public int decodeCharSequenceIntoBuffer() {
+        return Base64.decode(encodedString, decodeBuffer, 0);
+    }
+
+}
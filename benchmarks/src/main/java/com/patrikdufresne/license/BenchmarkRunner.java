@@ -0,0 +1,47 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks.jar. Accept the same arguments as the JMH runner. In addition, every benchmarks is
+ * executed once for each thread count defined by the system property <code>benchmark.threads</code> (default: 1,4)
+ * with the GC profiler enabled to report the allocation rate.
+ * <p>
+ * e.g.: <code>java -Dbenchmark.threads=1,8 -jar benchmarks/target/benchmarks.jar LicenseManagerBenchmark.verify -p keySize=2048</code>
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        String[] threads = System.getProperty("benchmark.threads", "1,4").split(",");
+        for (String t : threads) {
+            ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmdOptions).addProfiler(GCProfiler.class).threads(Integer.parseInt(t.trim()));
+            new Runner(builder.build()).run();
+        }
+    }
+
+}
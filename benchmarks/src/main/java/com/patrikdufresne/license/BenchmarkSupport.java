@@ -0,0 +1,94 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+
+/**
+ * Utility functions shared by the benchmarks to build keys and licenses of a given size.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+        // Utility class
+    }
+
+    /**
+     * Generate a new RSA key pair.
+     * 
+     * @param keySize
+     *            the key size in bits.
+     * @return the key pair
+     */
+    static KeyPair generateKeyPair(int keySize) throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(keySize);
+        return generator.generateKeyPair();
+    }
+
+    /**
+     * Generate a new key pair for the given signature algorithm: 2048 bits RSA, P-256 or Ed25519.
+     */
+    static KeyPair generateKeyPair(SignatureAlgorithm algorithm) throws GeneralSecurityException {
+        switch (algorithm) {
+        case SHA256_WITH_ECDSA:
+            KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+            ec.initialize(256);
+            return ec.generateKeyPair();
+        case ED25519:
+            return KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        default:
+            return generateKeyPair(2048);
+        }
+    }
+
+    /**
+     * Create a new license manager able to sign and verify using the given key pair.
+     */
+    static LicenseManager createManager(KeyPair keyPair) throws GeneralSecurityException {
+        return new LicenseManager(keyPair.getPublic().getEncoded(), keyPair.getPrivate().getEncoded());
+    }
+
+    /**
+     * Create a trial license with the given number of extra properties.
+     * 
+     * @param propertyCount
+     *            number of extra properties to be added.
+     * @param valueSize
+     *            length of each property value.
+     * @return the license
+     */
+    static License createLicense(int propertyCount, int valueSize) {
+        License license = new License();
+        license.setProperty(License.NAME, "Benchmark");
+        license.setProperty(License.EMAIL, "benchmark@example.com");
+        license.setProperty(License.LICENSE_TYPE, License.TYPE_TRIAL);
+        license.setProperty(License.EXPIRATION, "2099-12-31");
+        char[] value = new char[valueSize];
+        Arrays.fill(value, 'v');
+        for (int i = 0; i < propertyCount; i++) {
+            license.setProperty("property" + i, new String(value));
+        }
+        return license;
+    }
+
+}
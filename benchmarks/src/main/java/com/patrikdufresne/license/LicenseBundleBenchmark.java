@@ -0,0 +1,108 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the cost of opening a {@link LicenseBundle} and looking up a license by key.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LicenseBundleBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int size;
+
+    private File file;
+
+    private LicenseManager manager;
+
+    private LicenseBundle bundle;
+
+    private String key;
+
+    @Setup
+    public void setup() throws GeneralSecurityException, IOException, LicenseException {
+        manager = BenchmarkSupport.createManager(BenchmarkSupport.generateKeyPair(2048));
+        List<License> licenses = new ArrayList<License>(size);
+        for (int i = 0; i < size; i++) {
+            License license = BenchmarkSupport.createLicense(8, 16);
+            license.setProperty(License.ID, "tenant" + i);
+            licenses.add(license);
+        }
+        file = File.createTempFile("benchmark", ".bundle");
+        LicenseBundle.write(manager, licenses, License.ID, file);
+        bundle = new LicenseBundle(manager, file);
+        key = "tenant" + (size / 2);
+        bundle.get(key);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Open the bundle: map the file and check the index.
+     */
+    @Benchmark
+    public LicenseBundle open() throws IOException {
+        return new LicenseBundle(manager, file);
+    }
+
+    /**
+     * Binary search of the key in the mapped index.
+     */
+    @Benchmark
+    public int indexOf() {
+        return bundle.indexOf(key);
+    }
+
+    /**
+     * Lookup of a license already verified.
+     */
+    @Benchmark
+    public ImmutableLicense get() throws LicenseException {
+        return bundle.get(key);
+    }
+
+}
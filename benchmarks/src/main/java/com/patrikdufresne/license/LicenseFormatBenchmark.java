@@ -0,0 +1,87 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare the text and the binary license formats: parsing only and reading with the signature verification.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LicenseFormatBenchmark {
+
+    @Param({ "8", "64" })
+    public int propertyCount;
+
+    @Param({ "16", "512" })
+    public int valueSize;
+
+    @Param({ "TEXT", "BINARY" })
+    public LicenseFormat format;
+
+    private LicenseManager manager;
+
+    private byte[] content;
+
+    @Setup
+    public void setup() throws GeneralSecurityException, IOException {
+        manager = BenchmarkSupport.createManager(BenchmarkSupport.generateKeyPair(2048));
+        File file = File.createTempFile("benchmark", ".lic");
+        try {
+            manager.writeLicense(BenchmarkSupport.createLicense(propertyCount, valueSize), file, format);
+            content = Files.readAllBytes(file.toPath());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Benchmark
+    public SignedLicense parse() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        return format == LicenseFormat.BINARY ? BinaryCodec.read(buffer) : TextCodec.read(buffer);
+    }
+
+    @Benchmark
+    public License readLicense() throws Exception {
+        return manager.readLicense(content);
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the hot path check of a {@link LicenseGuard} shared by all the threads, compared to the validation of a
+ * shared {@link License}. The <code>contended</code> group checks the license while another thread keeps replacing
+ * it.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LicenseGuardBenchmark {
+
+    private String version = "2.1";
+
+    private License license;
+
+    private ImmutableLicense immutableLicense;
+
+    private LicenseGuard guard;
+
+    @Setup
+    public void setup() {
+        license = BenchmarkSupport.createLicense(8, 16);
+        license.setProperty(License.LICENSE_TYPE, License.TYPE_TRIAL);
+        license.setExpiration(new Date(System.currentTimeMillis() + 30L * 24 * 60 * 60 * 1000));
+        immutableLicense = license.freeze();
+        guard = new LicenseGuard(version);
+        guard.setLicense(immutableLicense);
+    }
+
+    @TearDown
+    public void tearDown() {
+        guard.close();
+    }
+
+    @Benchmark
+    public boolean check() {
+        return guard.check();
+    }
+
+    @Benchmark
+    public License validate() throws LicenseException {
+        license.validate(new Date(), version);
+        return license;
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public boolean contendedCheck() {
+        return guard.check();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public LicenseGuard contendedSetLicense() {
+        guard.setLicense(immutableLicense);
+        return guard;
+    }
+
+}
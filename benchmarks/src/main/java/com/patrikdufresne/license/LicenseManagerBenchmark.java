@@ -0,0 +1,146 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the {@link LicenseManager} operations: signing, verification, serialization and reading / writing
+ * license files.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LicenseManagerBenchmark {
+
+    @Param({ "2048", "4096" })
+    public int keySize;
+
+    @Param({ "8", "64" })
+    public int propertyCount;
+
+    @Param({ "16", "512" })
+    public int valueSize;
+
+    private LicenseManager manager;
+
+    private LicenseManager cachedManager;
+
+    private License license;
+
+    private byte[] data;
+
+    private byte[] signature;
+
+    private byte[] publicKey;
+
+    private LicenseVerifier verifier;
+
+    private File readFile;
+
+    private File writeFile;
+
+    @Setup
+    public void setup() throws GeneralSecurityException, IOException {
+        KeyPair keyPair = BenchmarkSupport.generateKeyPair(keySize);
+        manager = BenchmarkSupport.createManager(keyPair);
+        publicKey = keyPair.getPublic().getEncoded();
+        verifier = LicenseVerifier.getInstance(publicKey);
+        license = BenchmarkSupport.createLicense(propertyCount, valueSize);
+        data = manager.writeLicenseToByteArray(license);
+        signature = manager.sign(data);
+        readFile = File.createTempFile("benchmark", ".lic");
+        writeFile = File.createTempFile("benchmark", ".lic");
+        manager.writeLicense(license, readFile);
+        cachedManager = BenchmarkSupport.createManager(keyPair);
+        cachedManager.setCache(new LicenseCache(16));
+    }
+
+    @TearDown
+    public void tearDown() {
+        readFile.delete();
+        writeFile.delete();
+    }
+
+    @Benchmark
+    public byte[] sign() throws GeneralSecurityException {
+        return manager.sign(data);
+    }
+
+    @Benchmark
+    public boolean verify() throws GeneralSecurityException {
+        return manager.verify(data, signature);
+    }
+
+    /**
+     * Verify the license by streaming its canonical form into the signature.
+     */
+    @Benchmark
+    public boolean verifyLicense() throws GeneralSecurityException {
+        return verifier.verify(license, signature);
+    }
+
+    @Benchmark
+    public byte[] writeLicenseToByteArray() throws IOException {
+        return manager.writeLicenseToByteArray(license);
+    }
+
+    @Benchmark
+    public License readLicenseFile() throws Exception {
+        return manager.readLicenseFile(readFile);
+    }
+
+    @Benchmark
+    public License readLicenseFileCached() throws Exception {
+        return cachedManager.readLicenseFile(readFile);
+    }
+
+    @Benchmark
+    public License validate() throws LicenseException {
+        return LicenseManager.validate(new ByteArrayInputStream(publicKey), readFile);
+    }
+
+    @Benchmark
+    public File writeLicense() throws GeneralSecurityException, IOException {
+        manager.writeLicense(license, writeFile);
+        return writeFile;
+    }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare the signature algorithms: signing, verification and reading a license file from memory. RSA keys are
+ * 2048 bits and ECDSA uses the P-256 curve.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureAlgorithmBenchmark {
+
+    @Param({ "SHA1_WITH_RSA", "RSASSA_PSS", "SHA256_WITH_ECDSA", "ED25519" })
+    public SignatureAlgorithm algorithm;
+
+    private LicenseManager manager;
+
+    private LicenseVerifier verifier;
+
+    private License license;
+
+    private byte[] data;
+
+    private byte[] signature;
+
+    private byte[] content;
+
+    @Setup
+    public void setup() throws GeneralSecurityException, IOException, LicenseException {
+        KeyPair keyPair = BenchmarkSupport.generateKeyPair(algorithm);
+        manager = BenchmarkSupport.createManager(keyPair);
+        verifier = LicenseVerifier.getInstance(keyPair.getPublic().getEncoded());
+        manager.setSignatureAlgorithm(algorithm);
+        License unsigned = BenchmarkSupport.createLicense(8, 16);
+        File file = File.createTempFile("benchmark", ".lic");
+        try {
+            manager.writeLicense(unsigned, file);
+            content = Files.readAllBytes(file.toPath());
+        } finally {
+            file.delete();
+        }
+        // Read back the license with its signature algorithm property.
+        license = manager.readLicense(content);
+        data = manager.writeLicenseToByteArray(license);
+        signature = manager.sign(data);
+    }
+
+    @Benchmark
+    public byte[] sign() throws GeneralSecurityException {
+        return manager.sign(data);
+    }
+
+    @Benchmark
+    public boolean verifyLicense() throws GeneralSecurityException {
+        return verifier.verify(license, signature);
+    }
+
+    @Benchmark
+    public License readLicense() throws Exception {
+        return manager.readLicense(content);
+    }
+
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the time to the first license validation in a fresh JVM, with and without {@link LicenseManager#prewarm()}.
+ * The license manager is created while the application starts, simulated by a pause of <code>startupTime</code>
+ * milliseconds, then the first license is read and validated. The keys and the license are read from the resources
+ * so no cryptographic code runs before the license manager is created.
+ * <p>
+ * Each fork measures a single validation, so the result is averaged over 20 forks since a cold JVM is noisy.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean prewarm;
+
+    @Param({ "100" })
+    public long startupTime;
+
+    private byte[] publicKey;
+
+    private byte[] data;
+
+    private LicenseManager manager;
+
+    private static byte[] readResource(String name) throws IOException {
+        InputStream in = StartupBenchmark.class.getResourceAsStream(name);
+        try {
+            return LicenseManager.readAll(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException, GeneralSecurityException, InterruptedException {
+        publicKey = readResource("/startup/pubkey.der");
+        data = readResource("/startup/license.lic");
+        manager = new LicenseManager(publicKey, null);
+        if (prewarm) {
+            manager.prewarm();
+        }
+        // Simulate the rest of the application startup.
+        Thread.sleep(startupTime);
+    }
+
+    @Benchmark
+    public License firstValidation() throws IOException, GeneralSecurityException, LicenseException {
+        License license = manager.readLicense(data);
+        license.validate(new Date(), null);
+        return license;
+    }
+
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare the validation of a mutable {@link License} with the validation of an {@link ImmutableLicense}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidateBenchmark {
+
+    @Param({ "trial", "single-version" })
+    public String licenseType;
+
+    private String version = "2.1";
+
+    private License license;
+
+    private ImmutableLicense immutableLicense;
+
+    @Setup
+    public void setup() {
+        license = BenchmarkSupport.createLicense(8, 16);
+        license.setProperty(License.LICENSE_TYPE, licenseType);
+        license.setProperty(License.VERSION, "2\\..*");
+        immutableLicense = license.freeze();
+    }
+
+    @Benchmark
+    public License validate() throws LicenseException {
+        license.validate(new Date(), version);
+        return license;
+    }
+
+    @Benchmark
+    public boolean immutableIsValid() {
+        return immutableLicense.isValid(System.currentTimeMillis(), version);
+    }
+
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare the version validation using a regular expression compiled on every call (former implementation), the
+ * compiled regular expression and the compiled version range.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionMatcherBenchmark {
+
+    private static final String REGEX = "2\\.[0-9]+\\..*";
+
+    private static final String RANGE = ">=2.0 <3.0";
+
+    private String version = "2.10.4";
+
+    private VersionMatcher regex;
+
+    private VersionMatcher range;
+
+    @Setup
+    public void setup() {
+        regex = VersionMatcher.compile(REGEX);
+        range = VersionMatcher.compile(RANGE);
+    }
+
+    @Benchmark
+    public boolean regexCompiledOnEachCall() {
+        return Pattern.compile(REGEX).matcher(version).matches();
+    }
+
+    @Benchmark
+    public boolean regex() {
+        return regex.matches(version);
+    }
+
+    @Benchmark
+    public boolean range() {
+        return range.matches(version);
+    }
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the bulk issuance {@link LicenseManager#writeLicenses(Map, ExecutorService)} for different pool sizes.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(WriteLicensesBenchmark.COUNT)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteLicensesBenchmark {
+
+    static final int COUNT = 256;
+
+    @Param({ "1", "2", "4", "8" })
+    public int poolSize;
+
+    @Param({ "2048" })
+    public int keySize;
+
+    private LicenseManager manager;
+
+    private ExecutorService executor;
+
+    private File folder;
+
+    private Map<File, License> licenses;
+
+    @Setup
+    public void setup() throws GeneralSecurityException, IOException {
+        manager = BenchmarkSupport.createManager(BenchmarkSupport.generateKeyPair(keySize));
+        executor = Executors.newFixedThreadPool(poolSize);
+        folder = File.createTempFile("benchmark", "");
+        folder.delete();
+        folder.mkdir();
+        licenses = new LinkedHashMap<File, License>();
+        for (int i = 0; i < COUNT; i++) {
+            License license = BenchmarkSupport.createLicense(8, 16);
+            license.setProperty(License.LICENSE_NUMBER, Integer.toString(i));
+            licenses.put(new File(folder, i + ".lic"), license);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+        for (File file : licenses.keySet()) {
+            file.delete();
+        }
+        folder.delete();
+    }
+
+    @Benchmark
+    public List<Future<File>> writeLicenses() throws InterruptedException, ExecutionException {
+        List<Future<File>> results = manager.writeLicenses(licenses, executor);
+        for (Future<File> result : results) {
+            result.get();
+        }
+        return results;
+    }
+
+}
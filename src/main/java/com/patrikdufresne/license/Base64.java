@@ -15,6 +15,13 @@
  */
 package com.patrikdufresne.license;
 
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
 /**
  * This class is an adaptation of the BASE64Encoder provided in CA Spectrum RESTful Examples:
  * /usr/Spectrum/RestfulExamples/src/test/utils/BASE64Encoder.java
@@ -195,6 +202,371 @@ public final class Base64 {
         return new String(encodedData);
     }
 
+    /**
+     * Return the length of the Base64 encoding of the given number of bytes.
+     * 
+     * @param length
+     *            number of bytes to encode
+     * @return number of characters
+     */
+    public static int encodedLength(int length) {
+        return (length + 2) / 3 * FOURBYTE;
+    }
+
+    /**
+     * Return the number of bytes encoded in the given Base64 data.
+     * 
+     * @param base64Data
+     *            the Base64 data
+     * @return the number of bytes
+     * @throws IllegalArgumentException
+     *             if the length of the data is not a multiple of four.
+     */
+    public static int decodedLength(CharSequence base64Data) {
+        int length = base64Data.length();
+        if (length % FOURBYTE != 0) {
+            throw new IllegalArgumentException("invalid Base64 length");
+        }
+        int padding = 0;
+        while (padding < 2 && padding < length && base64Data.charAt(length - 1 - padding) == PAD) {
+            padding++;
+        }
+        return length / FOURBYTE * 3 - padding;
+    }
+
+    /**
+     * Decodes Base64 characters.
+     * 
+     * @param base64Data
+     *            the Base64 data
+     * @return the decoded data
+     * @throws IllegalArgumentException
+     *             if the data is not valid Base64.
+     */
+    public static byte[] decode(CharSequence base64Data) {
+        byte[] decodedData = new byte[decodedLength(base64Data)];
+        decode(base64Data, decodedData, 0);
+        return decodedData;
+    }
+
+    /**
+     * Decodes Base64 characters into the given array without creating any object.
+     * 
+     * @param base64Data
+     *            the Base64 data
+     * @param dst
+     *            the destination array. Must have room for {@link #decodedLength(CharSequence)} bytes.
+     * @param off
+     *            the offset in the destination array.
+     * @return the number of bytes written.
+     * @throws IllegalArgumentException
+     *             if the data is not valid Base64.
+     */
+    public static int decode(CharSequence base64Data, byte[] dst, int off) {
+        int length = base64Data.length();
+        if (length % FOURBYTE != 0) {
+            throw new IllegalArgumentException("invalid Base64 length");
+        }
+        int pos = off;
+        for (int i = 0; i < length; i += FOURBYTE) {
+            int group = decodeQuadruple(
+                    base64Data.charAt(i),
+                    base64Data.charAt(i + 1),
+                    base64Data.charAt(i + 2),
+                    base64Data.charAt(i + 3),
+                    i + FOURBYTE == length);
+            for (int j = 0, n = group >>> 24; j < n; j++) {
+                dst[pos++] = (byte) (group >>> (16 - 8 * j));
+            }
+        }
+        return pos - off;
+    }
+
+    /**
+     * Decodes the remaining Base64 bytes of the source buffer into the destination buffer without creating any object.
+     * 
+     * @param src
+     *            the Base64 data. The position is moved to the limit.
+     * @param dst
+     *            the destination buffer. The position is moved after the decoded data.
+     * @return the number of bytes written.
+     * @throws IllegalArgumentException
+     *             if the data is not valid Base64.
+     * @throws java.nio.BufferOverflowException
+     *             if the destination buffer is too small.
+     */
+    public static int decode(ByteBuffer src, ByteBuffer dst) {
+        int length = src.remaining();
+        if (length % FOURBYTE != 0) {
+            throw new IllegalArgumentException("invalid Base64 length");
+        }
+        int start = dst.position();
+        for (int i = 0; i < length; i += FOURBYTE) {
+            int group = decodeQuadruple(src.get(), src.get(), src.get(), src.get(), i + FOURBYTE == length);
+            for (int j = 0, n = group >>> 24; j < n; j++) {
+                dst.put((byte) (group >>> (16 - 8 * j)));
+            }
+        }
+        return dst.position() - start;
+    }
+
+    /**
+     * Decodes a group of four Base64 characters.
+     * 
+     * @param last
+     *            True if this is the last group, the only one allowed to be padded.
+     * @return the number of decoded bytes in the 8 most significant bits followed by the 24 bits of data.
+     */
+    private static int decodeQuadruple(int c1, int c2, int c3, int c4, boolean last) {
+        int bits = value(c1) << 18 | value(c2) << 12;
+        if (last && c3 == PAD) { // Two PAD e.g. 3c[Pad][Pad]
+            if (c4 != PAD) {
+                throw new IllegalArgumentException("invalid Base64 padding");
+            }
+            return 1 << 24 | bits;
+        }
+        bits |= value(c3) << 6;
+        if (last && c4 == PAD) { // One PAD e.g. 3cQ[Pad]
+            return 2 << 24 | bits;
+        }
+        return 3 << 24 | bits | value(c4);
+    }
+
+    /**
+     * Return the 6 bits value of a Base64 character.
+     * 
+     * @throws IllegalArgumentException
+     *             if the character is not part of the alphabet.
+     */
+    private static int value(int c) {
+        int b = c >= 0 && c < BASELENGTH ? base64Alphabet[c] : -1;
+        if (b < 0) {
+            throw new IllegalArgumentException("invalid Base64 character: " + c);
+        }
+        return b;
+    }
+
+    /**
+     * Encodes bytes into Base64 characters written to the given array without creating any object.
+     * 
+     * @param src
+     *            the data to encode
+     * @param srcOff
+     *            offset of the data
+     * @param length
+     *            number of bytes to encode
+     * @param dst
+     *            the destination array. Must have room for {@link #encodedLength(int)} bytes.
+     * @param dstOff
+     *            offset in the destination array.
+     * @return the number of bytes written.
+     */
+    public static int encode(byte[] src, int srcOff, int length, byte[] dst, int dstOff) {
+        int pos = dstOff;
+        int end = srcOff + length;
+        int i = srcOff;
+        for (; i + 3 <= end; i += 3) {
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+            dst[pos++] = lookUpBase64Alphabet[bits >>> 18];
+            dst[pos++] = lookUpBase64Alphabet[(bits >>> 12) & 0x3f];
+            dst[pos++] = lookUpBase64Alphabet[(bits >>> 6) & 0x3f];
+            dst[pos++] = lookUpBase64Alphabet[bits & 0x3f];
+        }
+        if (end - i == 1) {
+            int bits = (src[i] & 0xff) << 16;
+            dst[pos++] = lookUpBase64Alphabet[bits >>> 18];
+            dst[pos++] = lookUpBase64Alphabet[(bits >>> 12) & 0x3f];
+            dst[pos++] = PAD;
+            dst[pos++] = PAD;
+        } else if (end - i == 2) {
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8;
+            dst[pos++] = lookUpBase64Alphabet[bits >>> 18];
+            dst[pos++] = lookUpBase64Alphabet[(bits >>> 12) & 0x3f];
+            dst[pos++] = lookUpBase64Alphabet[(bits >>> 6) & 0x3f];
+            dst[pos++] = PAD;
+        }
+        return pos - dstOff;
+    }
+
+    /**
+     * Input stream decoding the Base64 data read from the underlying stream. White spaces are ignored.
+     */
+    public static class DecodingInputStream extends FilterInputStream {
+
+        private final byte[] decoded = new byte[3];
+
+        private int pos;
+
+        private int count;
+
+        private boolean eof;
+
+        /**
+         * Create a new decoding stream.
+         * 
+         * @param in
+         *            the stream containing the Base64 data.
+         */
+        public DecodingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos == count && !fill()) {
+                return -1;
+            }
+            return decoded[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int n = 0;
+            while (n < len) {
+                if (pos == count && !fill()) {
+                    break;
+                }
+                int size = Math.min(count - pos, len - n);
+                System.arraycopy(decoded, pos, b, off + n, size);
+                pos += size;
+                n += size;
+            }
+            return n == 0 ? -1 : n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n && read() != -1) {
+                skipped++;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return count - pos;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * Decode the next group of four characters.
+         * 
+         * @return False at the end of the stream.
+         */
+        private boolean fill() throws IOException {
+            if (eof) {
+                return false;
+            }
+            int c1 = nextChar();
+            if (c1 == -1) {
+                eof = true;
+                return false;
+            }
+            int c2 = nextChar();
+            int c3 = nextChar();
+            int c4 = nextChar();
+            if (c4 == -1) {
+                throw new IOException("truncated Base64 data");
+            }
+            int group;
+            try {
+                group = decodeQuadruple(c1, c2, c3, c4, c3 == PAD || c4 == PAD);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage());
+            }
+            count = group >>> 24;
+            for (int j = 0; j < count; j++) {
+                decoded[j] = (byte) (group >>> (16 - 8 * j));
+            }
+            eof = count < 3;
+            pos = 0;
+            return true;
+        }
+
+        private int nextChar() throws IOException {
+            int c;
+            do {
+                c = in.read();
+            } while (c == ' ' || c == '\t' || c == '\r' || c == '\n');
+            return c;
+        }
+
+    }
+
+    /**
+     * Output stream encoding the data into Base64 before writing it to the underlying stream. The stream must be
+     * closed, or {@link #finish()} must be called, to write the padding.
+     */
+    public static class EncodingOutputStream extends FilterOutputStream {
+
+        private final byte[] pending = new byte[3];
+
+        private final byte[] encoded = new byte[4];
+
+        private int count;
+
+        private boolean finished;
+
+        /**
+         * Create a new encoding stream.
+         * 
+         * @param out
+         *            the stream receiving the Base64 data.
+         */
+        public EncodingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (finished) {
+                throw new IOException("stream finished");
+            }
+            pending[count++] = (byte) b;
+            if (count == 3) {
+                encode(pending, 0, 3, encoded, 0);
+                out.write(encoded);
+                count = 0;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            for (int i = 0; i < len; i++) {
+                write(b[off + i]);
+            }
+        }
+
+        /**
+         * Write the remaining bytes with padding without closing the underlying stream.
+         */
+        public void finish() throws IOException {
+            if (!finished) {
+                if (count > 0) {
+                    encode(pending, 0, count, encoded, 0);
+                    out.write(encoded);
+                    count = 0;
+                }
+                finished = true;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            super.close();
+        }
+
+    }
+
     public static boolean isArrayByteBase64(byte[] arrayOctect) {
         int length = arrayOctect.length;
         if (length == 0) {
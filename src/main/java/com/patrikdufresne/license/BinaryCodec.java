@@ -0,0 +1,247 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Read and write the binary form of a license file. All the integers are unsigned variable-length integers: seven
+ * bits per byte, least significant group first, the high bit set on all bytes but the last.
+ * 
+ * <pre>
+ * magic          0x89 'L' 'I' 'C'
+ * version        1 byte
+ * algorithm      1 byte
+ * count          varint
+ * properties     count times: key length (varint), key (UTF-8), value length (varint), value (UTF-8)
+ * signature      length (varint), raw signature
+ * </pre>
+ * <p>
+ * The properties are sorted by key. The signature algorithm property is not written: it's restored from the
+ * algorithm byte. The signature is computed on the same canonical form as the text format, so a license may be
+ * converted from one format to the other without being signed again.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+final class BinaryCodec {
+
+    /**
+     * Magic number at the beginning of a binary license. The first byte is not valid at the beginning of an UTF-8
+     * text file.
+     */
+    private static final byte[] MAGIC = { (byte) 0x89, 'L', 'I', 'C' };
+
+    private static final int VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int INITIAL_SIZE = 1024;
+
+    /**
+     * Larger buffers are not kept by the thread after use.
+     */
+    private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+    /**
+     * Buffer used by each thread to copy the strings from direct or read-only buffers.
+     */
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>();
+
+    private BinaryCodec() {
+        // Use static methods.
+    }
+
+    /**
+     * Check if the data starts with the binary magic number. The buffer position is not modified.
+     */
+    static boolean isBinary(ByteBuffer in) {
+        if (in.remaining() < MAGIC.length) {
+            return false;
+        }
+        int pos = in.position();
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (in.get(pos + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the identifier of the algorithm in the binary format.
+     */
+    private static int getId(SignatureAlgorithm algorithm) {
+        switch (algorithm) {
+        case SHA1_WITH_RSA:
+            return 1;
+        case RSASSA_PSS:
+            return 2;
+        case SHA256_WITH_ECDSA:
+            return 3;
+        case ED25519:
+            return 4;
+        default:
+            throw new IllegalArgumentException("algorithm");
+        }
+    }
+
+    private static SignatureAlgorithm fromId(int id) throws IOException {
+        switch (id) {
+        case 1:
+            return SignatureAlgorithm.SHA1_WITH_RSA;
+        case 2:
+            return SignatureAlgorithm.RSASSA_PSS;
+        case 3:
+            return SignatureAlgorithm.SHA256_WITH_ECDSA;
+        case 4:
+            return SignatureAlgorithm.ED25519;
+        default:
+            throw new IOException("unknown signature algorithm: " + id);
+        }
+    }
+
+    /**
+     * Parse the binary license from the buffer position to its limit. The buffer position is moved to its limit.
+     * 
+     * @param in
+     *            the content of the license file.
+     * @return the license and its signature.
+     * @throws IOException
+     *             if the data is malformed.
+     */
+    static SignedLicense read(ByteBuffer in) throws IOException {
+        try {
+            if (!isBinary(in)) {
+                throw new IOException("not a binary license");
+            }
+            in.position(in.position() + MAGIC.length);
+            int version = in.get() & 0xff;
+            if (version != VERSION) {
+                throw new IOException("unsupported binary license version: " + version);
+            }
+            SignatureAlgorithm algorithm = fromId(in.get() & 0xff);
+            int count = readLength(in);
+            License license = new License();
+            for (int i = 0; i < count; i++) {
+                String key = readString(in);
+                license.setProperty(key, readString(in));
+            }
+            license.setProperty(License.SIGNATURE_ALGORITHM, algorithm == SignatureAlgorithm.SHA1_WITH_RSA ? null : algorithm.getName());
+            byte[] signature = new byte[readLength(in)];
+            in.get(signature);
+            if (in.hasRemaining()) {
+                throw new IOException("unexpected data after the signature");
+            }
+            return new SignedLicense(license, signature);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("truncated license data");
+        } finally {
+            in.position(in.limit());
+        }
+    }
+
+    /**
+     * Read a length and check that the remaining data is large enough.
+     */
+    private static int readLength(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                if (value < 0 || value > in.remaining()) {
+                    throw new IOException("truncated license data");
+                }
+                return value;
+            }
+        }
+        throw new IOException("malformed length");
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = readLength(in);
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, UTF8);
+            in.position(in.position() + length);
+        } else {
+            byte[] buf = BUFFER.get();
+            if (buf == null || buf.length < length) {
+                buf = new byte[Math.max(length, INITIAL_SIZE)];
+                if (buf.length <= MAX_RETAINED_SIZE) {
+                    BUFFER.set(buf);
+                }
+            }
+            in.get(buf, 0, length);
+            value = new String(buf, 0, length, UTF8);
+        }
+        return value;
+    }
+
+    /**
+     * Write the binary license into the stream.
+     * 
+     * @param out
+     *            the output stream.
+     * @param license
+     *            the license with the signature algorithm property matching the algorithm.
+     * @param algorithm
+     *            the algorithm used to sign the license.
+     * @param signature
+     *            the raw signature.
+     */
+    static void write(OutputStream out, License license, SignatureAlgorithm algorithm, byte[] signature) throws IOException {
+        String[] keys = license.getSortedKeys();
+        byte[][] fields = new byte[keys.length * 2][];
+        int size = MAGIC.length + 2 + 5 + 5 + signature.length;
+        int count = 0;
+        for (String key : keys) {
+            if (License.SIGNATURE_ALGORITHM.equals(key)) {
+                continue;
+            }
+            fields[count] = key.getBytes(UTF8);
+            fields[count + 1] = license.getProperty(key).getBytes(UTF8);
+            size += fields[count].length + fields[count + 1].length + 10;
+            count += 2;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.put(MAGIC);
+        buf.put((byte) VERSION);
+        buf.put((byte) getId(algorithm));
+        writeLength(buf, count / 2);
+        for (int i = 0; i < count; i++) {
+            writeLength(buf, fields[i].length);
+            buf.put(fields[i]);
+        }
+        writeLength(buf, signature.length);
+        buf.put(signature);
+        out.write(buf.array(), 0, buf.position());
+    }
+
+    private static void writeLength(ByteBuffer buf, int value) {
+        while ((value & ~0x7f) != 0) {
+            buf.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.Signature;
+import java.security.SignatureException;
+
+/**
+ * Write the canonical form of a license: the data being signed. The canonical form is the sorted keys and values
+ * written as UTF-16 characters through an {@link java.io.ObjectOutputStream}. This class produces the exact same
+ * bytes without the object stream, the intermediate byte arrays and the copies: the bytes are written directly into
+ * the {@link Signature} through a small buffer reused by each thread.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+final class CanonicalForm {
+
+    /**
+     * Object stream header: magic number and version.
+     */
+    private static final byte[] STREAM_HEADER = { (byte) 0xac, (byte) 0xed, 0x00, 0x05 };
+
+    /**
+     * Header of a block of data shorter than 256 bytes.
+     */
+    private static final byte TC_BLOCKDATA = 0x77;
+
+    /**
+     * Header of a long block of data.
+     */
+    private static final byte TC_BLOCKDATALONG = 0x7A;
+
+    /**
+     * Maximum length of a block of data. Same as the object stream.
+     */
+    private static final int MAX_BLOCK_SIZE = 1024;
+
+    /**
+     * Space reserved in front of the buffer to write the block header.
+     */
+    private static final int MAX_HEADER_SIZE = 5;
+
+    private static final ThreadLocal<CanonicalForm> INSTANCE = new ThreadLocal<CanonicalForm>() {
+        @Override
+        protected CanonicalForm initialValue() {
+            return new CanonicalForm();
+        }
+    };
+
+    /**
+     * Update the signature with the canonical form of the license.
+     * 
+     * @param signature
+     *            the signature initialized for signing or verification.
+     * @param license
+     *            the license
+     * @throws SignatureException
+     *             if the signature is not initialized.
+     */
+    static void update(Signature signature, License license) throws SignatureException {
+        CanonicalForm form = INSTANCE.get();
+        form.signature = signature;
+        try {
+            form.write(license);
+        } catch (IOException e) {
+            // Never happen when writing to a signature.
+            throw new SignatureException(e);
+        } finally {
+            form.signature = null;
+        }
+    }
+
+    /**
+     * Write the canonical form of the license into the stream.
+     * 
+     * @param out
+     *            the output stream
+     * @param license
+     *            the license
+     */
+    static void write(OutputStream out, License license) throws IOException {
+        CanonicalForm form = INSTANCE.get();
+        form.out = out;
+        try {
+            form.write(license);
+        } catch (SignatureException e) {
+            // Never happen when writing to a stream.
+            throw new IOException(e);
+        } finally {
+            form.out = null;
+        }
+    }
+
+    /**
+     * Buffer of the current block. The first bytes are reserved for the block header.
+     */
+    private final byte[] buf = new byte[MAX_HEADER_SIZE + MAX_BLOCK_SIZE];
+
+    private int pos;
+
+    private Signature signature;
+
+    private OutputStream out;
+
+    private CanonicalForm() {
+        // Use static methods.
+    }
+
+    private void write(License license) throws IOException, SignatureException {
+        pos = MAX_HEADER_SIZE;
+        emit(STREAM_HEADER, 0, STREAM_HEADER.length);
+        for (String key : license.getSortedKeys()) {
+            writeChars(key);
+            writeChars(license.getProperty(key));
+        }
+        drain();
+    }
+
+    /**
+     * Write each character as two bytes, high byte first.
+     */
+    private void writeChars(String value) throws IOException, SignatureException {
+        for (int i = 0, len = value.length(); i < len; i++) {
+            char c = value.charAt(i);
+            if (pos == buf.length) {
+                drain();
+            }
+            buf[pos++] = (byte) (c >>> 8);
+            if (pos == buf.length) {
+                drain();
+            }
+            buf[pos++] = (byte) c;
+        }
+    }
+
+    /**
+     * Write the current block with its header.
+     */
+    private void drain() throws IOException, SignatureException {
+        int len = pos - MAX_HEADER_SIZE;
+        if (len == 0) {
+            return;
+        }
+        int off;
+        if (len <= 0xFF) {
+            off = MAX_HEADER_SIZE - 2;
+            buf[off] = TC_BLOCKDATA;
+            buf[off + 1] = (byte) len;
+        } else {
+            off = 0;
+            buf[0] = TC_BLOCKDATALONG;
+            buf[1] = (byte) (len >>> 24);
+            buf[2] = (byte) (len >>> 16);
+            buf[3] = (byte) (len >>> 8);
+            buf[4] = (byte) len;
+        }
+        emit(buf, off, pos - off);
+        pos = MAX_HEADER_SIZE;
+    }
+
+    private void emit(byte[] b, int off, int len) throws IOException, SignatureException {
+        if (signature != null) {
+            signature.update(b, off, len);
+        } else {
+            out.write(b, off, len);
+        }
+    }
+
+}
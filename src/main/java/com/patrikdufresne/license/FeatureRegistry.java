@@ -0,0 +1,159 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process-wide registry assigning a small integer identifier to each feature name. The features declared by a
+ * license are compiled into a bit set indexed by these identifiers, so checking a feature is a single bit test.
+ * <p>
+ * An application registers its features once at startup and keeps the identifiers in constants. The features must
+ * be registered before the licenses are read: the features compiled in a license are fixed and the names that are
+ * not registered are ignored.
+ * 
+ * <pre>
+ * static final int EXPORT = FeatureRegistry.register(&quot;export&quot;);
+ * ...
+ * if (license.isEnabled(EXPORT)) {
+ *     ...
+ * }
+ * </pre>
+ * <p>
+ * This class is thread-safe. The identifiers are never reused for the life of the process.
+ * 
+ * @author Patrik Dufresne
+ * @see License#FEATURES
+ * 
+ */
+public final class FeatureRegistry {
+
+    /**
+     * Separator of the feature names in the features property.
+     */
+    private static final char SEPARATOR = ',';
+
+    private static final long[] EMPTY = new long[0];
+
+    private static final ConcurrentMap<String, Integer> IDS = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * Feature names by identifier. Guarded by itself.
+     */
+    private static final List<String> NAMES = new ArrayList<String>();
+
+    private FeatureRegistry() {
+        // Use static methods.
+    }
+
+    /**
+     * Return the identifier of the feature, registering it if required.
+     * 
+     * @param name
+     *            the feature name.
+     * @return the feature identifier.
+     */
+    public static int register(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("name");
+        }
+        Integer id = IDS.get(name);
+        if (id != null) {
+            return id.intValue();
+        }
+        synchronized (NAMES) {
+            id = IDS.get(name);
+            if (id == null) {
+                id = Integer.valueOf(NAMES.size());
+                NAMES.add(name);
+                IDS.put(name, id);
+            }
+            return id.intValue();
+        }
+    }
+
+    /**
+     * Return the identifier of the feature.
+     * 
+     * @param name
+     *            the feature name.
+     * @return the feature identifier or -1 if the feature is not registered.
+     */
+    public static int getId(String name) {
+        Integer id = IDS.get(name);
+        return id != null ? id.intValue() : -1;
+    }
+
+    /**
+     * Return the name of the feature.
+     * 
+     * @param id
+     *            the feature identifier.
+     * @return the feature name or null if the identifier is not registered.
+     */
+    public static String getName(int id) {
+        synchronized (NAMES) {
+            return id >= 0 && id < NAMES.size() ? NAMES.get(id) : null;
+        }
+    }
+
+    /**
+     * Compile the comma separated feature names into a bit set. The names that are not registered are ignored, so the
+     * content of a license never grows the registry.
+     * 
+     * @param features
+     *            the value of the features property or null.
+     * @return the bit set, one bit per feature identifier.
+     */
+    static long[] compile(String features) {
+        if (features == null) {
+            return EMPTY;
+        }
+        long[] bits = EMPTY;
+        int start = 0;
+        int length = features.length();
+        while (start <= length) {
+            int end = features.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = length;
+            }
+            int id = getId(features.substring(start, end).trim());
+            if (id >= 0) {
+                int word = id >>> 6;
+                if (word >= bits.length) {
+                    long[] newBits = new long[word + 1];
+                    System.arraycopy(bits, 0, newBits, 0, bits.length);
+                    bits = newBits;
+                }
+                bits[word] |= 1L << id;
+            }
+            start = end + 1;
+        }
+        return bits;
+    }
+
+    /**
+     * Check if the bit of the feature is set.
+     */
+    static boolean isEnabled(long[] bits, int featureId) {
+        int word = featureId >>> 6;
+        return word < bits.length && (bits[word] & (1L << featureId)) != 0;
+    }
+
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+import com.patrikdufresne.license.util.LicenseMetrics;
+import com.patrikdufresne.license.util.LicenseMetrics.Outcome;
+import com.patrikdufresne.license.util.LicenseMetrics.Stage;
+import com.patrikdufresne.license.util.Policy;
+
+/**
+ * Immutable snapshot of a {@link License}. The expiration date, the license type and the version constraint are
+ * parsed once when the license is frozen. Validating an immutable license is then a few primitive comparisons.
+ * <p>
+ * This class is thread-safe. Since all the fields are final, an instance may be published to other threads without
+ * synchronization.
+ * 
+ * @author Patrik Dufresne
+ * @see License#freeze()
+ * 
+ */
+public final class ImmutableLicense {
+
+    /**
+     * Value of the expiration time when the expiration date is not defined.
+     */
+    private static final long NO_EXPIRATION = Long.MIN_VALUE;
+
+    private final Map<String, String> properties;
+
+    private final LicenseType type;
+
+    /**
+     * Expiration time in milliseconds since epoch or {@link #NO_EXPIRATION}.
+     */
+    private final long expiration;
+
+    /**
+     * The version constraint. Null if undefined or invalid.
+     */
+    private final VersionMatcher versionMatcher;
+
+    /**
+     * The enabled features, one bit per feature identifier.
+     */
+    private final long[] features;
+
+    /**
+     * Create a new immutable license from the given license.
+     * 
+     * @param license
+     *            the license to be copied.
+     */
+    ImmutableLicense(License license) {
+        this.properties = Collections.unmodifiableMap(new HashMap<String, String>(license.getProperties()));
+        this.type = LicenseType.fromValue(license.getProperty(License.LICENSE_TYPE));
+        Date date = license.getExpiration();
+        this.expiration = date != null ? date.getTime() : NO_EXPIRATION;
+        VersionMatcher matcher;
+        try {
+            matcher = license.getVersionMatcher();
+        } catch (PatternSyntaxException e) {
+            // The version can't be validated.
+            matcher = null;
+        }
+        this.versionMatcher = matcher;
+        this.features = license.getFeatures();
+    }
+
+    /**
+     * Return an unmodifiable map of properties.
+     */
+    public Map<String, String> getProperties() {
+        return this.properties;
+    }
+
+    /**
+     * Get the property value.
+     * 
+     * @param key
+     *            the property key
+     */
+    public String getProperty(String key) {
+        return this.properties.get(key);
+    }
+
+    /**
+     * Return the license type.
+     */
+    public LicenseType getType() {
+        return this.type;
+    }
+
+    /**
+     * Return the expiration date.
+     * 
+     * @return the expiration or null if not defined.
+     */
+    public Date getExpiration() {
+        return this.expiration != NO_EXPIRATION ? new Date(this.expiration) : null;
+    }
+
+    /**
+     * Check if the feature is enabled by this license without creating any object.
+     * 
+     * @param featureId
+     *            the feature identifier.
+     * @return True if the feature is declared in the {@link License#FEATURES} property.
+     * @see FeatureRegistry#register(String)
+     */
+    public boolean isEnabled(int featureId) {
+        return FeatureRegistry.isEnabled(this.features, featureId);
+    }
+
+    /**
+     * Return a mutable copy of this license.
+     */
+    public License toLicense() {
+        License license = new License();
+        for (Map.Entry<String, String> e : this.properties.entrySet()) {
+            license.setProperty(e.getKey(), e.getValue());
+        }
+        return license;
+    }
+
+    /**
+     * Check if this license is valid without creating any object.
+     * 
+     * @param currentTime
+     *            the current time in milliseconds since epoch.
+     * @param currentVersion
+     *            the current version.
+     * @return True if the license is valid.
+     */
+    public boolean isValid(long currentTime, String currentVersion) {
+        return !isExpired(currentTime) && !isVersionExpired(currentVersion);
+    }
+
+    /**
+     * Check if this license is valid.
+     * 
+     * @param currentDate
+     *            the current date.
+     * @param currentVersion
+     *            the current version.
+     * @throws LicenseExpiredException
+     *             if the trial license is expired.
+     * @throws LicenseVersionExpiredException
+     *             if the current version is not covered by the single version license.
+     */
+    public void validate(Date currentDate, String currentVersion) throws LicenseException {
+        LicenseMetrics metrics = Policy.getMetrics();
+        long start = metrics != null ? System.nanoTime() : 0;
+        boolean expired = isExpired(currentDate.getTime());
+        boolean versionExpired = !expired && isVersionExpired(currentVersion);
+        if (metrics != null) {
+            metrics.record(Stage.VALIDATE, expired || versionExpired ? Outcome.EXPIRED : Outcome.SUCCESS, System.nanoTime() - start);
+        }
+        if (expired) {
+            throw new LicenseExpiredException();
+        }
+        if (versionExpired) {
+            throw new LicenseVersionExpiredException();
+        }
+    }
+
+    /**
+     * Check if this trial license is expired, regardless of the version.
+     */
+    boolean isExpired(long currentTime) {
+        return this.type == LicenseType.TRIAL && (this.expiration == NO_EXPIRATION || currentTime > this.expiration);
+    }
+
+    private boolean isVersionExpired(String currentVersion) {
+        return this.type == LicenseType.SINGLE_VERSION && (this.versionMatcher == null || !this.versionMatcher.matches(currentVersion));
+    }
+
+}
@@ -18,12 +18,16 @@ package com.patrikdufresne.license;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+
+import com.patrikdufresne.license.util.LicenseMetrics;
+import com.patrikdufresne.license.util.LicenseMetrics.Outcome;
+import com.patrikdufresne.license.util.LicenseMetrics.Stage;
+import com.patrikdufresne.license.util.Policy;
 
 /**
  * This class represent the license information. The {@link License} class should be used to store related information
@@ -36,11 +40,29 @@ public final class License {
 
     public static final String EMAIL = "email";
     public static final String EXPIRATION = "expiration";
+    /**
+     * Comma separated names of the features enabled by the license.
+     * 
+     * @see FeatureRegistry
+     */
+    public static final String FEATURES = "features";
     public static final String ID = "id";
+    /**
+     * Identifier of the key used to sign the license.
+     * 
+     * @see LicenseKeyring
+     */
+    public static final String KEY_ID = "keyId";
 
     public static final String LICENSE_NUMBER = "licenseNumber";
     public static final String LICENSE_TYPE = "licenseType";
     public static final String NAME = "name";
+    /**
+     * Name of the algorithm used to sign the license. Not defined for SHA1withRSA.
+     * 
+     * @see SignatureAlgorithm
+     */
+    public static final String SIGNATURE_ALGORITHM = "signatureAlgorithm";
     /**
      * License type for lifetime version. Always valid.
      */
@@ -60,6 +82,23 @@ public final class License {
      */
     private Map<String, String> properties;
 
+    /**
+     * The sorted property keys. Computed when the license is signed or verified and cleared when a property is
+     * modified.
+     */
+    private volatile String[] sortedKeys;
+
+    /**
+     * The compiled version constraint. Compiled on first validation and cleared when the version is modified.
+     */
+    private volatile VersionMatcher versionMatcher;
+
+    /**
+     * The enabled features, one bit per feature identifier. Compiled on first use and cleared when the features are
+     * modified.
+     */
+    private volatile long[] features;
+
     /**
      * Create a new license with default property value.
      */
@@ -74,6 +113,26 @@ public final class License {
         // licenseType = TYPE_TRIAL;
     }
 
+    /**
+     * Create a new license with the same properties as the given license.
+     * 
+     * @param license
+     *            the license to be copied.
+     */
+    public License(License license) {
+        this.properties = new HashMap<String, String>(license.properties);
+    }
+
+    /**
+     * Create an immutable snapshot of this license. The expiration date, the license type and the version constraint
+     * are parsed once. The snapshot may be shared by multiple threads and validated without creating any object.
+     * 
+     * @return the immutable license
+     */
+    public ImmutableLicense freeze() {
+        return new ImmutableLicense(this);
+    }
+
     /**
      * Return an unmodifiable map of properties.
      * 
@@ -111,6 +170,58 @@ public final class License {
         return this.properties.get(key);
     }
 
+    /**
+     * Return the sorted property keys.
+     */
+    String[] getSortedKeys() {
+        String[] keys = this.sortedKeys;
+        if (keys == null) {
+            keys = this.properties.keySet().toArray(new String[this.properties.size()]);
+            Arrays.sort(keys);
+            this.sortedKeys = keys;
+        }
+        return keys;
+    }
+
+    /**
+     * Return the compiled version constraint.
+     * 
+     * @return the version constraint or null if the version is not defined.
+     * @see VersionMatcher
+     */
+    public VersionMatcher getVersionMatcher() {
+        VersionMatcher matcher = this.versionMatcher;
+        if (matcher == null && getProperty(VERSION) != null) {
+            matcher = VersionMatcher.compile(getProperty(VERSION));
+            this.versionMatcher = matcher;
+        }
+        return matcher;
+    }
+
+    /**
+     * Return the enabled features compiled into a bit set.
+     */
+    long[] getFeatures() {
+        long[] bits = this.features;
+        if (bits == null) {
+            bits = FeatureRegistry.compile(getProperty(FEATURES));
+            this.features = bits;
+        }
+        return bits;
+    }
+
+    /**
+     * Check if the feature is enabled by this license. Once the features are compiled, this is a single bit test.
+     * 
+     * @param featureId
+     *            the feature identifier.
+     * @return True if the feature is declared in the {@link #FEATURES} property.
+     * @see FeatureRegistry#register(String)
+     */
+    public boolean isEnabled(int featureId) {
+        return FeatureRegistry.isEnabled(getFeatures(), featureId);
+    }
+
     /**
      * Set the license expiration date. Required with TYPE_TRIAL
      * 
@@ -135,6 +246,12 @@ public final class License {
      *            the property value.
      */
     public void setProperty(String key, String value) {
+        this.sortedKeys = null;
+        if (VERSION.equals(key)) {
+            this.versionMatcher = null;
+        } else if (FEATURES.equals(key)) {
+            this.features = null;
+        }
         if (value == null) {
             this.properties.remove(key);
         } else {
@@ -149,11 +266,21 @@ public final class License {
      *            the license object
      */
     public void validate(Date currentDate, String currentVersion) throws LicenseException {
-
-        validateExpiration(new Date());
-
-        validateVersion(currentVersion);
-
+        LicenseMetrics metrics = Policy.getMetrics();
+        long start = metrics != null ? System.nanoTime() : 0;
+        Outcome outcome = Outcome.ERROR;
+        try {
+            validateExpiration(new Date());
+            validateVersion(currentVersion);
+            outcome = Outcome.SUCCESS;
+        } catch (LicenseException e) {
+            outcome = Outcome.EXPIRED;
+            throw e;
+        } finally {
+            if (metrics != null) {
+                metrics.record(Stage.VALIDATE, outcome, System.nanoTime() - start);
+            }
+        }
     }
 
     /**
@@ -174,7 +301,8 @@ public final class License {
     }
 
     /**
-     * Used to validate the version according to the license type.
+     * Used to validate the version according to the license type. The version property may be a regular expression
+     * or a version range, see {@link VersionMatcher}.
      * 
      * @param currentVersion
      * @throws LicenseVersionExpiredException
@@ -182,12 +310,8 @@ public final class License {
     protected void validateVersion(String currentVersion) throws LicenseVersionExpiredException {
 
         if (TYPE_SINGLE_VERSION.equals(getProperty(LICENSE_TYPE))) {
-            if (getProperty(VERSION) == null) {
-                throw new LicenseVersionExpiredException();
-            }
-            Pattern pattern = Pattern.compile(getProperty(VERSION));
-            Matcher matcher = pattern.matcher(currentVersion);
-            if (!matcher.matches()) {
+            VersionMatcher matcher = getVersionMatcher();
+            if (matcher == null || !matcher.matches(currentVersion)) {
                 throw new LicenseVersionExpiredException();
             }
         }
@@ -0,0 +1,404 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A single file holding many signed licenses with a sorted index. The file is memory mapped: opening a bundle only
+ * reads its index and a license is only verified the first time it's accessed.
+ * 
+ * <pre>
+ * magic          0x89 'L' 'B' 'N'
+ * version        1 byte, followed by 3 reserved bytes
+ * count          int
+ * index          count times: key offset, key length, license offset, license length (int)
+ * keys           UTF-8 keys sorted by bytes
+ * licenses       each license in the binary license format
+ * </pre>
+ * <p>
+ * This class is thread-safe. The licenses are returned as {@link ImmutableLicense} and should still be validated by
+ * the caller with {@link ImmutableLicense#isValid(long, String)}.
+ * 
+ * @author Patrik Dufresne
+ * @see LicenseFormat#BINARY
+ * 
+ */
+public final class LicenseBundle {
+
+    private static final byte[] MAGIC = { (byte) 0x89, 'L', 'B', 'N' };
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 12;
+
+    private static final int ENTRY_SIZE = 16;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Compare the keys as unsigned bytes.
+     */
+    private static final Comparator<byte[]> KEY_ORDER = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] a, byte[] b) {
+            int len = Math.min(a.length, b.length);
+            for (int i = 0; i < len; i++) {
+                int c = (a[i] & 0xff) - (b[i] & 0xff);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return a.length - b.length;
+        }
+    };
+
+    /**
+     * Sign the licenses and write them into a bundle.
+     * 
+     * @param manager
+     *            the license manager used to sign the licenses.
+     * @param licenses
+     *            the licenses.
+     * @param keyProperty
+     *            the property used as key, e.g. {@link License#ID} or {@link License#LICENSE_NUMBER}.
+     * @param file
+     *            the bundle file. If file exists, it's overwrite.
+     * @throws IllegalArgumentException
+     *             if a license doesn't define the key property or if a key is not unique.
+     * @throws GeneralSecurityException
+     *             if a license can't be signed.
+     * @throws IOException
+     *             if the file can't be written.
+     */
+    public static void write(LicenseManager manager, Collection<License> licenses, String keyProperty, File file) throws GeneralSecurityException, IOException {
+        byte[][][] entries = new byte[licenses.size()][][];
+        int count = 0;
+        for (License license : licenses) {
+            String key = license.getProperty(keyProperty);
+            if (key == null) {
+                throw new IllegalArgumentException("license without " + keyProperty);
+            }
+            entries[count++] = new byte[][] { key.getBytes(UTF8), manager.toByteArray(license, LicenseFormat.BINARY) };
+        }
+        Arrays.sort(entries, new Comparator<byte[][]>() {
+            @Override
+            public int compare(byte[][] a, byte[][] b) {
+                return KEY_ORDER.compare(a[0], b[0]);
+            }
+        });
+        long keyOffset = HEADER_SIZE + (long) count * ENTRY_SIZE;
+        long licenseOffset = keyOffset;
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && KEY_ORDER.compare(entries[i - 1][0], entries[i][0]) == 0) {
+                throw new IllegalArgumentException("duplicate key: " + new String(entries[i][0], UTF8));
+            }
+            licenseOffset += entries[i][0].length;
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.write(new byte[3]);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeInt(toInt(keyOffset));
+                out.writeInt(entries[i][0].length);
+                out.writeInt(toInt(licenseOffset));
+                out.writeInt(entries[i][1].length);
+                keyOffset += entries[i][0].length;
+                licenseOffset += entries[i][1].length;
+            }
+            toInt(licenseOffset);
+            for (int i = 0; i < count; i++) {
+                out.write(entries[i][0]);
+            }
+            for (int i = 0; i < count; i++) {
+                out.write(entries[i][1]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static int toInt(long offset) throws IOException {
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("bundle too large");
+        }
+        return (int) offset;
+    }
+
+    private final LicenseManager manager;
+
+    /**
+     * The property of the licenses used as key.
+     */
+    private final String keyProperty;
+
+    /**
+     * The content of the bundle. Only accessed with absolute methods or through duplicates.
+     */
+    private final ByteBuffer buffer;
+
+    private final int count;
+
+    /**
+     * The licenses verified so far.
+     */
+    private final AtomicReferenceArray<ImmutableLicense> licenses;
+
+    /**
+     * Open a bundle indexed by license {@link License#ID}.
+     * 
+     * @see #LicenseBundle(LicenseManager, File, String)
+     */
+    public LicenseBundle(LicenseManager manager, File file) throws IOException {
+        this(manager, file, License.ID);
+    }
+
+    /**
+     * Open a bundle. The file is memory mapped and its index is checked. The licenses are not verified.
+     * <p>
+     * Since the index is not signed, each license is checked to hold the key of its index entry when verified.
+     * 
+     * @param manager
+     *            the license manager used to verify the licenses.
+     * @param file
+     *            the bundle file.
+     * @param keyProperty
+     *            the property used as key when writing the bundle.
+     * @throws IOException
+     *             if the file can't be read or is not a valid bundle.
+     */
+    public LicenseBundle(LicenseManager manager, File file, String keyProperty) throws IOException {
+        if (manager == null) {
+            throw new NullPointerException("manager");
+        }
+        if (keyProperty == null) {
+            throw new NullPointerException("keyProperty");
+        }
+        this.manager = manager;
+        this.keyProperty = keyProperty;
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("bundle too large");
+            }
+            this.buffer = channel.map(MapMode.READ_ONLY, 0, size);
+        } finally {
+            // The mapping remains valid after the channel is closed.
+            channel.close();
+        }
+        if (this.buffer.limit() < HEADER_SIZE) {
+            throw new IOException("not a license bundle");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (this.buffer.get(i) != MAGIC[i]) {
+                throw new IOException("not a license bundle");
+            }
+        }
+        int version = this.buffer.get(MAGIC.length) & 0xff;
+        if (version != VERSION) {
+            throw new IOException("unsupported license bundle version: " + version);
+        }
+        this.count = this.buffer.getInt(8);
+        if (this.count < 0 || HEADER_SIZE + (long) this.count * ENTRY_SIZE > this.buffer.limit()) {
+            throw new IOException("invalid license bundle index");
+        }
+        for (int i = 0; i < this.count; i++) {
+            int entry = HEADER_SIZE + i * ENTRY_SIZE;
+            checkRange(this.buffer.getInt(entry), this.buffer.getInt(entry + 4));
+            checkRange(this.buffer.getInt(entry + 8), this.buffer.getInt(entry + 12));
+        }
+        this.licenses = new AtomicReferenceArray<ImmutableLicense>(this.count);
+    }
+
+    private void checkRange(int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || (long) offset + length > this.buffer.limit()) {
+            throw new IOException("invalid license bundle index");
+        }
+    }
+
+    /**
+     * Return the number of licenses in the bundle.
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Return the key of the license at the given position. Keys are sorted.
+     * 
+     * @param index
+     *            the position of the license.
+     */
+    public String getKey(int index) {
+        checkIndex(index);
+        int entry = HEADER_SIZE + index * ENTRY_SIZE;
+        byte[] key = new byte[this.buffer.getInt(entry + 4)];
+        ByteBuffer dup = this.buffer.duplicate();
+        dup.position(this.buffer.getInt(entry));
+        dup.get(key);
+        return new String(key, UTF8);
+    }
+
+    /**
+     * Return the position of the license with the given key using a binary search of the index.
+     * 
+     * @param key
+     *            the key.
+     * @return the position of the license or -1 if not found.
+     */
+    public int indexOf(String key) {
+        byte[] k = key.getBytes(UTF8);
+        int low = 0;
+        int high = this.count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compareKey(mid, k);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compare the key at the given position with the given key without creating any object.
+     */
+    private int compareKey(int index, byte[] key) {
+        int entry = HEADER_SIZE + index * ENTRY_SIZE;
+        int offset = this.buffer.getInt(entry);
+        int length = this.buffer.getInt(entry + 4);
+        int len = Math.min(length, key.length);
+        for (int i = 0; i < len; i++) {
+            int c = (this.buffer.get(offset + i) & 0xff) - (key[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * Return the license with the given key. The license is verified on first access.
+     * 
+     * @param key
+     *            the key.
+     * @return the license or null if not found.
+     * @throws LicenseException
+     *             if the license can't be read, its signature is invalid or it doesn't hold the key.
+     */
+    public ImmutableLicense get(String key) throws LicenseException {
+        int index = indexOf(key);
+        return index >= 0 ? get(index) : null;
+    }
+
+    /**
+     * Return the license at the given position. The license is verified on first access.
+     * 
+     * @param index
+     *            the position of the license.
+     * @return the license.
+     * @throws LicenseException
+     *             if the license can't be read, its signature is invalid or it doesn't hold the key of the index.
+     */
+    public ImmutableLicense get(int index) throws LicenseException {
+        checkIndex(index);
+        ImmutableLicense license = this.licenses.get(index);
+        if (license != null) {
+            return license;
+        }
+        int entry = HEADER_SIZE + index * ENTRY_SIZE;
+        int offset = this.buffer.getInt(entry + 8);
+        ByteBuffer dup = this.buffer.duplicate();
+        dup.position(offset);
+        dup.limit(offset + this.buffer.getInt(entry + 12));
+        try {
+            license = this.manager.readLicense(dup).freeze();
+        } catch (LicenseException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new LicenseException("invalid licence in bundle", e);
+        }
+        // The index is not signed, make sure it points to the right license.
+        if (!getKey(index).equals(license.getProperty(this.keyProperty))) {
+            throw new LicenseException("license doesn't match the bundle index");
+        }
+        // Keep the first instance if verified concurrently.
+        if (!this.licenses.compareAndSet(index, null, license)) {
+            license = this.licenses.get(index);
+        }
+        return license;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.count) {
+            throw new IndexOutOfBoundsException("index: " + index);
+        }
+    }
+
+    /**
+     * Return a view of the licenses, sorted by key, to scan the bundle. The list implements {@link RandomAccess}, so
+     * {@link List#subList(int, int)} may be used to split it into ranges processed in parallel. On Java 8 and later, a
+     * parallel stream of the list is split the same way. Each license is verified on first access and the licenses
+     * which are not valid are returned as null.
+     */
+    public List<ImmutableLicense> asList() {
+        return new LicenseList();
+    }
+
+    private final class LicenseList extends AbstractList<ImmutableLicense> implements RandomAccess {
+
+        @Override
+        public ImmutableLicense get(int index) {
+            try {
+                return LicenseBundle.this.get(index);
+            } catch (LicenseException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+    }
+
+}
@@ -0,0 +1,274 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of verified licenses. When a cache is defined on a {@link LicenseManager}, reading an unchanged
+ * license file returns the previously verified license without parsing the file or verifying the signature again.
+ * <p>
+ * A license file is considered unchanged when its canonical path, size and last modified time are the same. Since
+ * some file systems have a coarse modification time, the cache may also be created to compare a checksum of the file
+ * content. The least recently used entries are evicted when the cache is full.
+ * <p>
+ * This class is thread-safe and may be shared by multiple license managers. The entries are bound to the public key
+ * (or keyring) used to verify them.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public final class LicenseCache {
+
+    /**
+     * Algorithm used to compute the checksum of the license file.
+     */
+    private static final String CHECKSUM_ALGORITHM = "SHA-256";
+
+    private static final int BUF_SIZE = 4096;
+
+    /**
+     * Key of a cache entry.
+     */
+    private static final class Key {
+
+        /**
+         * The public key or the generation of the keyring used to verify the license.
+         */
+        private final Object owner;
+
+        private final String path;
+
+        Key(Object owner, String path) {
+            this.owner = owner;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return path.equals(other.path) && owner.equals(other.owner);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * path.hashCode() + owner.hashCode();
+        }
+
+    }
+
+    /**
+     * Value of a cache entry: the verified license and the state of the file when it was read.
+     */
+    private static final class CachedLicense {
+
+        private final long length;
+
+        private final long lastModified;
+
+        private final byte[] checksum;
+
+        private final License license;
+
+        CachedLicense(long length, long lastModified, byte[] checksum, License license) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+            this.license = license;
+        }
+
+    }
+
+    private final boolean checksum;
+
+    private final Map<Key, CachedLicense> entries;
+
+    /**
+     * Create a new cache comparing the file size and last modified time.
+     * 
+     * @param maximumSize
+     *            the maximum number of licenses to be kept in cache.
+     */
+    public LicenseCache(int maximumSize) {
+        this(maximumSize, false);
+    }
+
+    /**
+     * Create a new cache.
+     * 
+     * @param maximumSize
+     *            the maximum number of licenses to be kept in cache.
+     * @param checksum
+     *            True to also compare a checksum of the file content. This require to read the file on every lookup.
+     */
+    public LicenseCache(final int maximumSize, boolean checksum) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be greater than zero");
+        }
+        this.checksum = checksum;
+        this.entries = new LinkedHashMap<Key, CachedLicense>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedLicense> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Remove all the licenses from the cache.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Return the number of licenses in the cache.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * State of a license file captured before reading it. If the file get modified while reading it, the next lookup
+     * will miss.
+     */
+    static final class Snapshot {
+
+        private final Key key;
+
+        private final long length;
+
+        private final long lastModified;
+
+        private final byte[] checksum;
+
+        Snapshot(Key key, long length, long lastModified, byte[] checksum) {
+            this.key = key;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+
+    }
+
+    /**
+     * Capture the state of the license file before reading it.
+     * 
+     * @param owner
+     *            the public key or the generation of the keyring used to verify the license.
+     * @param file
+     *            the license file.
+     */
+    Snapshot snapshot(Object owner, File file) throws IOException, NoSuchAlgorithmException {
+        return new Snapshot(new Key(owner, file.getCanonicalPath()), file.length(), file.lastModified(), this.checksum ? checksum(file) : null);
+    }
+
+    /**
+     * Return the cached license if the file didn't change since it was verified.
+     * 
+     * @return a copy of the verified license or null on cache miss.
+     */
+    License get(Snapshot snapshot) {
+        CachedLicense entry;
+        synchronized (this) {
+            entry = this.entries.get(snapshot.key);
+        }
+        if (entry != null && entry.length == snapshot.length && entry.lastModified == snapshot.lastModified && Arrays.equals(entry.checksum, snapshot.checksum)) {
+            return new License(entry.license);
+        }
+        return null;
+    }
+
+    /**
+     * Add a verified license to the cache.
+     * 
+     * @param snapshot
+     *            the state of the file captured before reading it.
+     * @param license
+     *            the verified license.
+     */
+    void put(Snapshot snapshot, License license) {
+        CachedLicense entry = new CachedLicense(snapshot.length, snapshot.lastModified, snapshot.checksum, new License(license));
+        synchronized (this) {
+            this.entries.put(snapshot.key, entry);
+        }
+    }
+
+    /**
+     * Read the license file using the cache. On cache miss, the license file is read and verified by the license
+     * manager.
+     * 
+     * @param manager
+     *            the license manager used to verify the license.
+     * @param owner
+     *            the public key or the generation of the keyring used to verify the license.
+     * @param file
+     *            the license file.
+     * @return a copy of the verified license.
+     */
+    License read(LicenseManager manager, Object owner, File file)
+            throws IOException,
+            InvalidKeyException,
+            NoSuchAlgorithmException,
+            SignatureException,
+            LicenseException {
+        Snapshot snapshot = snapshot(owner, file);
+        License license = get(snapshot);
+        if (license != null) {
+            return license;
+        }
+
+        // Cache miss, read and verify the file.
+        license = manager.readLicenseUncached(file.toPath());
+        put(snapshot, license);
+        return license;
+    }
+
+    /**
+     * Compute the checksum of the given file.
+     */
+    private static byte[] checksum(File file) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+        InputStream input = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[BUF_SIZE];
+            int size;
+            while ((size = input.read(buf)) != -1) {
+                digest.update(buf, 0, size);
+            }
+        } finally {
+            input.close();
+        }
+        return digest.digest();
+    }
+
+}
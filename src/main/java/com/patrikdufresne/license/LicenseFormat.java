@@ -0,0 +1,38 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+/**
+ * The encodings of a license file.
+ * 
+ * @author Patrik Dufresne
+ * @see LicenseManager#writeLicense(License, java.io.File, LicenseFormat)
+ * 
+ */
+public enum LicenseFormat {
+
+    /**
+     * Property file encoded in UTF-8 with a Base64 signature. Readable by all versions.
+     */
+    TEXT,
+
+    /**
+     * Compact binary encoding: a magic header, a version, the signature algorithm, the properties as length-prefixed
+     * UTF-8 strings and the raw signature. Faster to read and smaller than the text format.
+     */
+    BINARY;
+
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.Closeable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hold the validity of the current license for the hot path of an application. The license is validated once when
+ * it's set. For a trial license, a single timer is scheduled at the expiration time to flip the state. Checking the
+ * license is then a single volatile read.
+ * <p>
+ * This class is thread-safe.
+ * 
+ * <pre>
+ * LicenseGuard guard = new LicenseGuard(&quot;2.1&quot;);
+ * guard.setLicense(LicenseManager.validate(publicKey, new File(&quot;application.lic&quot;)));
+ * ...
+ * if (!guard.check()) {
+ *     throw new IllegalStateException(&quot;invalid license&quot;);
+ * }
+ * </pre>
+ * 
+ * @author Patrik Dufresne
+ * @see LicenseMonitor
+ * 
+ */
+public final class LicenseGuard implements Closeable {
+
+    /**
+     * Immutable state published to the readers.
+     */
+    private static final class State {
+
+        final ImmutableLicense license;
+
+        final boolean valid;
+
+        State(ImmutableLicense license, boolean valid) {
+            this.license = license;
+            this.valid = valid;
+        }
+
+    }
+
+    /**
+     * Lazily create the thread shared by all the guards to flip the state at expiration.
+     */
+    private static final class Scheduler {
+
+        static final ScheduledExecutorService INSTANCE;
+
+        static {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "LicenseGuard");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            INSTANCE = executor;
+        }
+
+    }
+
+    private static final State INVALID = new State(null, false);
+
+    private final String currentVersion;
+
+    private volatile State state = INVALID;
+
+    /**
+     * The timer flipping the state at expiration. Guarded by this.
+     */
+    private ScheduledFuture<?> expiry;
+
+    /**
+     * Create a new guard without license.
+     * 
+     * @param currentVersion
+     *            the current version of the application used to validate single version licenses.
+     */
+    public LicenseGuard(String currentVersion) {
+        this.currentVersion = currentVersion;
+    }
+
+    /**
+     * Check if the current license is valid.
+     * 
+     * @return True if the license is valid.
+     */
+    public boolean check() {
+        return this.state.valid;
+    }
+
+    /**
+     * Return the current license.
+     * 
+     * @return the license or null if not defined.
+     */
+    public ImmutableLicense getLicense() {
+        return this.state.license;
+    }
+
+    /**
+     * Sets the current license.
+     * 
+     * @param license
+     *            the license or null to remove the license.
+     */
+    public void setLicense(License license) {
+        setLicense(license != null ? license.freeze() : null);
+    }
+
+    /**
+     * Sets the current license. The license is validated immediately and, for a trial license, a timer is scheduled
+     * at the expiration time.
+     * 
+     * @param license
+     *            the license or null to remove the license.
+     */
+    public synchronized void setLicense(ImmutableLicense license) {
+        cancel();
+        boolean valid = license != null && license.isValid(System.currentTimeMillis(), this.currentVersion);
+        State s = new State(license, valid);
+        this.state = s;
+        if (valid && license.getType() == LicenseType.TRIAL) {
+            schedule(s);
+        }
+    }
+
+    /**
+     * Cancel the timer. The state is left unchanged.
+     */
+    @Override
+    public synchronized void close() {
+        cancel();
+    }
+
+    private void cancel() {
+        if (this.expiry != null) {
+            this.expiry.cancel(false);
+            this.expiry = null;
+        }
+    }
+
+    private void schedule(final State s) {
+        // The license is expired after the expiration time.
+        long delay = s.license.getExpiration().getTime() + 1 - System.currentTimeMillis();
+        this.expiry = Scheduler.INSTANCE.schedule(new Runnable() {
+            @Override
+            public void run() {
+                expire(s);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void expire(State s) {
+        if (this.state != s || this.expiry == null) {
+            // License replaced or guard closed.
+            return;
+        }
+        if (s.license.isValid(System.currentTimeMillis(), this.currentVersion)) {
+            // The clock was adjusted since the timer was scheduled.
+            schedule(s);
+            return;
+        }
+        this.expiry = null;
+        this.state = new State(s.license, false);
+    }
+
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SignatureException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Set of public keys indexed by key identifier. Used to verify licenses signed with different private keys, e.g.:
+ * while rotating the keys. The key identifier is recorded in the signed {@link License#KEY_ID} property of the license
+ * when signing, see {@link LicenseManager#setKeyId(String)}, so the right public key is selected with a single lookup
+ * and the signature is verified only once.
+ * <p>
+ * Licenses without key identifier, signed before the keyring was introduced, are verified with the default verifier
+ * if defined.
+ * <p>
+ * This class is thread-safe. Keys may be added or removed while licenses are verified. Any change of the keys
+ * invalidates the licenses cached by a {@link LicenseCache} for this keyring.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public final class LicenseKeyring {
+
+    /**
+     * Verifiers indexed by key identifier.
+     */
+    private final ConcurrentMap<String, LicenseVerifier> verifiers = new ConcurrentHashMap<String, LicenseVerifier>();
+
+    /**
+     * Verifier used for licenses without key identifier. Null if not defined.
+     */
+    private volatile LicenseVerifier defaultVerifier;
+
+    /**
+     * Replaced on every change of the keys. Used to key the cached licenses.
+     */
+    private volatile Object generation = new Object();
+
+    /**
+     * Add a public key identified by its default key identifier.
+     * 
+     * @param verifier
+     *            the verifier of the public key.
+     * @return the key identifier.
+     * @see LicenseVerifier#getKeyId()
+     */
+    public String add(LicenseVerifier verifier) {
+        add(verifier.getKeyId(), verifier);
+        return verifier.getKeyId();
+    }
+
+    /**
+     * Add a public key with the given key identifier. Replace the previous key with the same identifier.
+     * 
+     * @param keyId
+     *            the key identifier.
+     * @param verifier
+     *            the verifier of the public key.
+     */
+    public void add(String keyId, LicenseVerifier verifier) {
+        if (keyId == null) {
+            throw new NullPointerException("keyId");
+        }
+        if (verifier == null) {
+            throw new NullPointerException("verifier");
+        }
+        verifiers.put(keyId, verifier);
+        generation = new Object();
+    }
+
+    /**
+     * Remove the public key with the given identifier. Licenses signed with this key are no longer valid.
+     * 
+     * @param keyId
+     *            the key identifier.
+     * @return the verifier of the removed key or null if not found.
+     */
+    public LicenseVerifier remove(String keyId) {
+        LicenseVerifier verifier = verifiers.remove(keyId);
+        generation = new Object();
+        return verifier;
+    }
+
+    /**
+     * Return the verifier of the public key with the given identifier.
+     * 
+     * @param keyId
+     *            the key identifier.
+     * @return the verifier or null if not found.
+     */
+    public LicenseVerifier getVerifier(String keyId) {
+        return verifiers.get(keyId);
+    }
+
+    /**
+     * Return the identifiers of the public keys.
+     */
+    public Set<String> getKeyIds() {
+        return Collections.unmodifiableSet(verifiers.keySet());
+    }
+
+    /**
+     * Sets the verifier used for licenses without key identifier.
+     * 
+     * @param verifier
+     *            the verifier or null to reject licenses without key identifier.
+     */
+    public void setDefaultVerifier(LicenseVerifier verifier) {
+        this.defaultVerifier = verifier;
+        this.generation = new Object();
+    }
+
+    /**
+     * Returns the verifier used for licenses without key identifier.
+     * 
+     * @return the verifier or null if not defined.
+     */
+    public LicenseVerifier getDefaultVerifier() {
+        return this.defaultVerifier;
+    }
+
+    /**
+     * Return the current generation of the keys. A new object is returned after each change of the keys.
+     */
+    Object getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Return the verifier to be used for the given license.
+     * 
+     * @return the verifier or null if the key is unknown.
+     */
+    LicenseVerifier getVerifier(License license) {
+        String keyId = license.getProperty(License.KEY_ID);
+        return keyId == null ? defaultVerifier : verifiers.get(keyId);
+    }
+
+    /**
+     * Use to check if the license matches the given signature using the public key identified by the license.
+     * 
+     * @param license
+     *            the license
+     * @param sig
+     *            the signature associated with the license.
+     * @return true if the signature is valid. False if the signature is invalid or if the key is unknown.
+     * @see LicenseVerifier#verify(License, byte[])
+     */
+    public boolean verify(License license, byte[] sig) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        LicenseVerifier verifier = getVerifier(license);
+        return verifier != null && verifier.verify(license, sig);
+    }
+
+}
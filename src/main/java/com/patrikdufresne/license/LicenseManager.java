@@ -17,30 +17,41 @@ package com.patrikdufresne.license;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.ObjectOutputStream;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
-import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
-import java.security.PublicKey;
 import java.security.Signature;
 import java.security.SignatureException;
-import java.security.spec.PKCS8EncodedKeySpec;
-import java.security.spec.X509EncodedKeySpec;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import com.patrikdufresne.license.util.ILogger;
+import com.patrikdufresne.license.util.LicenseMetrics;
+import com.patrikdufresne.license.util.LicenseMetrics.Outcome;
+import com.patrikdufresne.license.util.LicenseMetrics.Stage;
+import com.patrikdufresne.license.util.Policy;
 
 /**
  * This the main entry point of the licensing module. This class should be used
@@ -48,31 +59,85 @@ import java.util.Properties;
  * <p>
  * Generally, an application will not required more then one instance of license
  * manager.
+ * <p>
+ * This class is thread-safe. A single instance may be shared by any number of threads to read, verify and write
+ * license files concurrently. Each thread keeps its own pre-initialized {@link Signature} instances to avoid the
+ * provider lookup and the key initialization on every call.
  * 
  * @author Patrik Dufresne
  * 
  */
 public class LicenseManager {
+    private static final int BUF_SIZE = 4096;
+
     /**
-     * Property to store the signature.
+     * Default maximum size of a license file: 1 MiB.
      */
-    private static final String SIGNATURE = "signature";
+    private static final long DEFAULT_MAX_LICENSE_SIZE = 1024 * 1024;
 
     /**
-     * Define the encoding to be used to read and write the license file. Since the license may be generate on different
-     * platform with different default encoding, we need to hardcode this into a fixed encoding. UTF-8 should be a good
-     * choice.
+     * Default size from which the license files are memory mapped: 64 KiB.
      */
-    private static final String ENCODING = "UTF-8";
+    private static final long DEFAULT_MEMORY_MAP_THRESHOLD = 64 * 1024;
 
-    private static final int BUF_SIZE = 4096;
+    /**
+     * System property enabling the pre-warming of the license managers created with the keys, see {@link #prewarm()}.
+     * Not honored by the license managers created with a {@link LicenseVerifier} or a {@link LicenseKeyring}.
+     * e.g.: <code>-Dcom.patrikdufresne.license.prewarm=true</code>
+     */
+    public static final String PREWARM_PROPERTY = "com.patrikdufresne.license.prewarm";
 
-    private PublicKey publicKey;
+    /**
+     * Used to verify the license signature with our public key. Null when a keyring is used.
+     */
+    private final LicenseVerifier verifier;
+
+    /**
+     * Used to verify the license signature with the key identified by the license. Null when a single public key is
+     * used.
+     */
+    private final LicenseKeyring keyring;
 
     /**
      * Our private key.
      */
-    private PrivateKey privateKey;
+    private final PrivateKey privateKey;
+
+    /**
+     * Signatures initialized for signing with our private key, indexed by algorithm. One array per thread since
+     * {@link Signature} is not thread-safe.
+     */
+    private final ThreadLocal<Signature[]> signSignatures = new ThreadLocal<Signature[]>();
+
+    /**
+     * Algorithm used to sign the licenses.
+     */
+    private volatile SignatureAlgorithm signatureAlgorithm;
+
+    /**
+     * Identifier of our key recorded in the signed licenses. Null if not recorded.
+     */
+    private volatile String keyId;
+
+    /**
+     * Cache used by {@link #validate(InputStream, File...)}. Null if disabled.
+     */
+    private static volatile LicenseCache defaultCache;
+
+    /**
+     * Cache of verified licenses. Null if disabled.
+     */
+    private volatile LicenseCache cache;
+
+    /**
+     * Maximum size of a license file in bytes.
+     */
+    private volatile long maxLicenseSize = DEFAULT_MAX_LICENSE_SIZE;
+
+    /**
+     * Size from which license files are memory mapped.
+     */
+    private volatile long memoryMapThreshold = DEFAULT_MEMORY_MAP_THRESHOLD;
 
     /**
      * This function is used to read a stream.
@@ -82,7 +147,7 @@ public class LicenseManager {
      * @return the data read from the stream
      * @throws IOException
      */
-    private static byte[] readAll(InputStream input) throws IOException {
+    static byte[] readAll(InputStream input) throws IOException {
         if (input == null) {
             return null;
         }
@@ -110,12 +175,7 @@ public class LicenseManager {
         if (file == null) {
             return null;
         }
-        InputStream input = new FileInputStream(file);
-        try {
-            return readAll(input);
-        } finally {
-            input.close();
-        }
+        return Files.readAllBytes(file.toPath());
     }
 
     /**
@@ -127,7 +187,7 @@ public class LicenseManager {
      *            the signature associated with the data.
      * 
      * @throws NoSuchAlgorithmException
-     *             if the algorithm SHA1withRSA is not supported.
+     *             if the signature algorithm is not supported.
      * @throws NoSuchProviderException
      * @throws InvalidKeyException
      *             if the key is invalid.
@@ -135,17 +195,10 @@ public class LicenseManager {
      *             if this signature algorithm is unable to process the input data
      */
     protected boolean verify(byte[] data, byte[] sig) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
-
-        // Initialize the signing algorithm with our public key
-        Signature rsaSignature = Signature.getInstance("SHA1withRSA");
-        rsaSignature.initVerify(publicKey);
-
-        // Update the signature algorithm with the data.
-        rsaSignature.update(data);
-
-        // Validate the signature
-        return rsaSignature.verify(sig);
-
+        if (verifier == null) {
+            throw new UnsupportedOperationException("Can't verify raw data with a keyring.");
+        }
+        return verifier.verify(signatureAlgorithm, data, sig);
     }
 
     /**
@@ -155,7 +208,7 @@ public class LicenseManager {
      *            the the data to be signed.
      * @return the signature for the given data.
      * @throws NoSuchAlgorithmException
-     *             if no Provider supports a Signature implementation for SHA1withRSA.
+     *             if no Provider supports a Signature implementation for the signature algorithm.
      * @throws InvalidKeyException
      *             if the private key is invalid.
      * @throws SignatureException
@@ -164,52 +217,294 @@ public class LicenseManager {
      *             if the private key was not providedin the constructor.
      */
     protected byte[] sign(byte[] data) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        SignatureAlgorithm algorithm = this.signatureAlgorithm;
+        Signature rsaSignature = getSignSignature(algorithm);
+        boolean reset = false;
+        try {
+            rsaSignature.update(data);
+
+            // Generate the signature. This call reset the signature object for the next signature.
+            byte[] signature = rsaSignature.sign();
+            reset = true;
+            return signature;
+        } finally {
+            if (!reset) {
+                discardSignSignature(algorithm);
+            }
+        }
+
+    }
+
+    /**
+     * Sign the canonical form of the license. The data is streamed into the signature algorithm without intermediate
+     * copies.
+     * 
+     * @param lic
+     *            the license with the signature algorithm property matching the algorithm.
+     * @see #sign(byte[])
+     * @see #prepare(License, SignatureAlgorithm, String)
+     */
+    private byte[] sign(License lic, SignatureAlgorithm algorithm) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        Signature rsaSignature = getSignSignature(algorithm);
+        boolean reset = false;
+        LicenseMetrics metrics = Policy.getMetrics();
+        long start = metrics != null ? System.nanoTime() : 0;
+        try {
+            CanonicalForm.update(rsaSignature, lic);
+            if (metrics != null) {
+                long now = System.nanoTime();
+                metrics.record(Stage.CANONICALIZE, Outcome.SUCCESS, now - start);
+                start = now;
+            }
+            byte[] signature = rsaSignature.sign();
+            reset = true;
+            return signature;
+        } finally {
+            if (!reset) {
+                discardSignSignature(algorithm);
+            }
+            if (metrics != null) {
+                metrics.record(Stage.SIGN, reset ? Outcome.SUCCESS : Outcome.ERROR, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Return the license to be signed with the given algorithm and key identifier. Since both are part of the signed
+     * data, a copy of the license is created when its properties don't match.
+     */
+    private static License prepare(License lic, SignatureAlgorithm algorithm, String keyId) {
+        String name = algorithm == SignatureAlgorithm.SHA1_WITH_RSA ? null : algorithm.getName();
+        if (equals(name, lic.getProperty(License.SIGNATURE_ALGORITHM)) && equals(keyId, lic.getProperty(License.KEY_ID))) {
+            return lic;
+        }
+        License copy = new License(lic);
+        copy.setProperty(License.SIGNATURE_ALGORITHM, name);
+        copy.setProperty(License.KEY_ID, keyId);
+        return copy;
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Return the signing algorithm initialized with our private key for the current thread.
+     * 
+     * @throws UnsupportedOperationException
+     *             if the private key was not provided in the constructor.
+     */
+    private Signature getSignSignature(SignatureAlgorithm algorithm) throws NoSuchAlgorithmException, InvalidKeyException {
         if (privateKey == null) {
             throw new UnsupportedOperationException("Can't sign when the private key is not available.");
         }
+        Signature[] signatures = signSignatures.get();
+        if (signatures == null) {
+            signatures = new Signature[SignatureAlgorithm.values().length];
+            signSignatures.set(signatures);
+        }
+        Signature rsaSignature = signatures[algorithm.ordinal()];
+        if (rsaSignature == null) {
+            rsaSignature = algorithm.newSignature();
+            rsaSignature.initSign(privateKey);
+            signatures[algorithm.ordinal()] = rsaSignature;
+        }
+        return rsaSignature;
+    }
 
-        // Initialize the signing algorithm with our private key
-        Signature rsaSignature = Signature.getInstance("SHA1withRSA");
-        rsaSignature.initSign(privateKey);
-        rsaSignature.update(data);
+    private void discardSignSignature(SignatureAlgorithm algorithm) {
+        Signature[] signatures = signSignatures.get();
+        if (signatures != null) {
+            signatures[algorithm.ordinal()] = null;
+        }
+    }
 
-        // Generate the signature.
-        return rsaSignature.sign();
+    /**
+     * Sets the cache of verified licenses used by {@link #validate(InputStream, File...)}. By default, no cache is used.
+     * 
+     * @param cache
+     *            the cache or null to disable caching.
+     */
+    public static void setDefaultCache(LicenseCache cache) {
+        defaultCache = cache;
+    }
 
+    /**
+     * Returns the cache of verified licenses used by {@link #validate(InputStream, File...)}.
+     * 
+     * @return the cache or null if disabled.
+     */
+    public static LicenseCache getDefaultCache() {
+        return defaultCache;
     }
 
     /**
-     * Utility function to easily validate a license file.
+     * Utility function to easily validate a license file. The public key is only decoded the first time, see
+     * {@link LicenseVerifier#getInstance(byte[])}.
      */
     public static License validate(InputStream publicKey, File... files) throws LicenseException {
         if (publicKey == null || files == null || files.length == 0) {
             throw new IllegalArgumentException();
         }
-        // Create a new license manager.
-        LicenseManager licenseManager;
+        LicenseVerifier verifier;
         try {
-            licenseManager = new LicenseManager(publicKey, null);
+            verifier = LicenseVerifier.getInstance(publicKey);
         } catch (Exception e) {
             throw new LicenseException("invalid public key", e);
         }
-        // Validate each license file.
-        LicenseException lastException = null;
-        for (File f : files) {
-            if (!f.exists()) {
+        return validate(verifier, files);
+    }
+
+    /**
+     * Utility function to easily validate a license file with a verifier.
+     * 
+     * @param verifier
+     *            the verifier of the public key.
+     * @param files
+     *            the license files to be validated in order. The first valid license is returned.
+     * @return the valid license
+     * @throws LicenseException
+     *             if none of the license files is valid.
+     */
+    public static License validate(LicenseVerifier verifier, File... files) throws LicenseException {
+        if (verifier == null || files == null || files.length == 0) {
+            throw new IllegalArgumentException();
+        }
+        // Create a new verify-only license manager.
+        return validate(new LicenseManager(verifier), files);
+    }
+
+    /**
+     * Utility function to easily validate a license file signed with any of the keys of the keyring.
+     * 
+     * @param keyring
+     *            the public keys.
+     * @param files
+     *            the license files to be validated in order. The first valid license is returned.
+     * @return the valid license
+     * @throws LicenseException
+     *             if none of the license files is valid.
+     * @see #validate(LicenseVerifier, File...)
+     */
+    public static License validate(LicenseKeyring keyring, File... files) throws LicenseException {
+        if (keyring == null || files == null || files.length == 0) {
+            throw new IllegalArgumentException();
+        }
+        return validate(new LicenseManager(keyring), files);
+    }
+
+    /**
+     * Validate the license files in two stages. First, the candidates are looked up in the cache, or read and parsed to
+     * reject the files that are missing, too large, malformed, not signed or expired without verifying any signature.
+     * The following files are ignored once a valid license is found in the cache.
+     * Then the signatures of the remaining candidates are verified in the order of the files, stopping at the first
+     * valid license. When the first candidate is valid, a single signature is verified.
+     */
+    private static License validate(LicenseManager licenseManager, File... files) throws LicenseException {
+        licenseManager.setCache(defaultCache);
+        // Reject the invalid candidates without verifying the signature.
+        LicenseException[] errors = new LicenseException[files.length];
+        List<Integer> indexes = new ArrayList<Integer>(files.length);
+        List<Callable<License>> candidates = new ArrayList<Callable<License>>(files.length);
+        for (int i = 0; i < files.length; i++) {
+            if (!files[i].exists()) {
                 continue;
             }
-            License license;
             try {
-                license = licenseManager.readLicenseFile(f);
-                license.validate(new Date(), null);
-                return license;
-            } catch (LicenseException e) {
-                lastException = e;
+                Callable<License> candidate = licenseManager.candidate(files[i]);
+                candidates.add(candidate);
+                indexes.add(Integer.valueOf(i));
+                // A valid cached license takes precedence over the following files.
+                if (candidate instanceof CachedCandidate) {
+                    break;
+                }
+            } catch (Exception e) {
+                errors[i] = toLicenseException(e);
+            }
+        }
+        // Verify the remaining candidates by priority.
+        for (int i = 0; i < candidates.size(); i++) {
+            try {
+                return candidates.get(i).call();
             } catch (Exception e) {
-                lastException = new LicenseException("invalid licence file", e);
+                errors[indexes.get(i).intValue()] = toLicenseException(e);
+            }
+        }
+        // Report the error of the last candidate.
+        for (int i = errors.length - 1; i >= 0; i--) {
+            if (errors[i] != null) {
+                throw errors[i];
+            }
+        }
+        throw new LicenseException("license file not found");
+    }
+
+    private static LicenseException toLicenseException(Throwable e) {
+        if (e instanceof LicenseException) {
+            return (LicenseException) e;
+        }
+        return new LicenseException("invalid licence file", e);
+    }
+
+    /**
+     * A candidate found in the cache, already verified and valid.
+     */
+    private static final class CachedCandidate implements Callable<License> {
+
+        private final License license;
+
+        CachedCandidate(License license) {
+            this.license = license;
+        }
+
+        @Override
+        public License call() {
+            return license;
+        }
+
+    }
+
+    /**
+     * Read and parse the license file and check the validity of the license without verifying its signature. If the
+     * file didn't change since it was verified, the license is taken from the cache without reading the file.
+     * 
+     * @return a task verifying the signature and returning the license.
+     * @throws LicenseException
+     *             if the license file is too large, not signed or if the license is not valid.
+     * @see #validate(LicenseManager, File...)
+     */
+    private Callable<License> candidate(final File file) throws IOException, GeneralSecurityException, LicenseException {
+        if (file.length() > this.maxLicenseSize) {
+            throw new LicenseException("license file too large");
+        }
+        final LicenseCache cache = this.cache;
+        final LicenseCache.Snapshot snapshot = cache != null ? cache.snapshot(getCacheOwner(), file) : null;
+        if (snapshot != null) {
+            License cached = cache.get(snapshot);
+            if (cached != null) {
+                cached.validate(new Date(), null);
+                return new CachedCandidate(cached);
             }
         }
-        throw lastException;
+        final SignedLicense signed = parse(readFile(file.toPath()));
+        signed.license.validate(new Date(), null);
+        return new Callable<License>() {
+            @Override
+            public License call() throws Exception {
+                License license = verify(signed);
+                if (snapshot != null) {
+                    cache.put(snapshot, license);
+                }
+                return license;
+            }
+        };
+    }
+
+    /**
+     * Return the object binding the cached licenses to our public keys.
+     */
+    private Object getCacheOwner() {
+        return keyring != null ? keyring.getGeneration() : verifier.getPublicKey();
     }
 
     /**
@@ -229,16 +524,52 @@ public class LicenseManager {
             throw new NullPointerException("publicKey");
         }
 
-        X509EncodedKeySpec spec = new X509EncodedKeySpec(publicKey);
-        KeyFactory kf = KeyFactory.getInstance("RSA");
-        this.publicKey = kf.generatePublic(spec);
+        this.verifier = LicenseVerifier.getInstance(publicKey);
+        this.keyring = null;
 
         if (privateKey != null) {
-            PKCS8EncodedKeySpec privateSpec = new PKCS8EncodedKeySpec(privateKey);
-            KeyFactory privateKeyFactory = KeyFactory.getInstance("RSA");
-            this.privateKey = privateKeyFactory.generatePrivate(privateSpec);
+            this.privateKey = SignatureAlgorithm.decodePrivateKey(privateKey);
+            this.signatureAlgorithm = SignatureAlgorithm.forKey(this.privateKey);
+        } else {
+            this.privateKey = null;
+            this.signatureAlgorithm = this.verifier.getSignatureAlgorithm();
+        }
+
+        if (Boolean.getBoolean(PREWARM_PROPERTY)) {
+            prewarm();
         }
+    }
+
+    /**
+     * Create a new license manager only able to read license files.
+     * 
+     * @param verifier
+     *            the verifier of the public key (can't be null).
+     */
+    public LicenseManager(LicenseVerifier verifier) {
+        if (verifier == null) {
+            throw new NullPointerException("verifier");
+        }
+        this.verifier = verifier;
+        this.keyring = null;
+        this.privateKey = null;
+        this.signatureAlgorithm = verifier.getSignatureAlgorithm();
+    }
 
+    /**
+     * Create a new license manager only able to read license files signed with any of the keys of the keyring.
+     * 
+     * @param keyring
+     *            the public keys (can't be null).
+     */
+    public LicenseManager(LicenseKeyring keyring) {
+        if (keyring == null) {
+            throw new NullPointerException("keyring");
+        }
+        this.verifier = null;
+        this.keyring = keyring;
+        this.privateKey = null;
+        this.signatureAlgorithm = null;
     }
 
     /**
@@ -286,7 +617,153 @@ public class LicenseManager {
     }
 
     /**
-     * Read the content of an encrypted license file.
+     * Start the pre-warming of the license manager in a background daemon thread. A dummy license is parsed, signed if
+     * the private key is available and verified, so the security provider is loaded and the code is compiled by the
+     * time the application reads its license file. This method returns immediately.
+     * <p>
+     * The pre-warming is enabled for every license manager created with the keys when the system property
+     * {@value #PREWARM_PROPERTY} is <code>true</code>. The license managers created with a {@link LicenseVerifier} or a
+     * {@link LicenseKeyring}, including the ones used by the static <code>validate()</code> methods, ignore the
+     * property and must be pre-warmed explicitly.
+     * 
+     * @return the pre-warming task, completed when done or failed with the cause of the failure.
+     */
+    public Future<?> prewarm() {
+        FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                long start = System.nanoTime();
+                try {
+                    warm();
+                } catch (Exception e) {
+                    Policy.getLog().log(ILogger.DEBUG, e);
+                    throw e;
+                }
+                Policy.getLog().log(
+                        ILogger.DEBUG,
+                        "license manager pre-warmed in {} ms",
+                        Long.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+                return null;
+            }
+        });
+        Thread thread = new Thread(task, "LicenseManager-prewarm");
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+
+    /**
+     * Run every stage of the license verification with a dummy license, without notifying the metrics.
+     */
+    private void warm() throws IOException, GeneralSecurityException {
+        License license = new License();
+        license.setProperty(License.NAME, "prewarm");
+        license.setProperty(License.LICENSE_TYPE, License.TYPE_LIFETIME);
+        SignatureAlgorithm algorithm = this.signatureAlgorithm != null ? this.signatureAlgorithm : SignatureAlgorithm.SHA1_WITH_RSA;
+        byte[] signature = new byte[1];
+        if (privateKey != null) {
+            license = prepare(license, algorithm, null);
+            signature = sign(writeLicenseToByteArray(license));
+        }
+        // Load the codecs.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TextCodec.write(out, license, signature);
+        TextCodec.read(ByteBuffer.wrap(out.toByteArray()));
+        out.reset();
+        BinaryCodec.write(out, license, algorithm, signature);
+        BinaryCodec.read(ByteBuffer.wrap(out.toByteArray()));
+        // Verify with each public key.
+        if (this.verifier != null) {
+            this.verifier.prewarm(license);
+        } else {
+            LicenseVerifier defaultVerifier = this.keyring.getDefaultVerifier();
+            if (defaultVerifier != null) {
+                defaultVerifier.prewarm(license);
+            }
+            for (String keyId : this.keyring.getKeyIds()) {
+                LicenseVerifier v = this.keyring.getVerifier(keyId);
+                if (v != null) {
+                    v.prewarm(license);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the cache of verified licenses used by {@link #readLicenseFile(File)}. By default, no cache is used and the
+     * license file is read and verified on every call.
+     * 
+     * @param cache
+     *            the cache or null to disable caching.
+     */
+    public void setCache(LicenseCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the cache of verified licenses.
+     * 
+     * @return the cache or null if disabled.
+     */
+    public LicenseCache getCache() {
+        return this.cache;
+    }
+
+    /**
+     * Sets the algorithm used to sign the licenses. By default, the algorithm is selected according to the type of
+     * the private key: {@link SignatureAlgorithm#SHA1_WITH_RSA} for RSA keys, {@link SignatureAlgorithm#SHA256_WITH_ECDSA}
+     * for EC keys and {@link SignatureAlgorithm#ED25519} for Ed25519 keys.
+     * 
+     * @param signatureAlgorithm
+     *            the algorithm.
+     * @throws IllegalArgumentException
+     *             if the algorithm doesn't match the type of the keys.
+     */
+    public void setSignatureAlgorithm(SignatureAlgorithm signatureAlgorithm) {
+        if (signatureAlgorithm == null) {
+            throw new NullPointerException("signatureAlgorithm");
+        }
+        if (verifier == null) {
+            throw new UnsupportedOperationException("Can't sign when the private key is not available.");
+        }
+        if (!signatureAlgorithm.supports(privateKey != null ? privateKey : verifier.getPublicKey())) {
+            throw new IllegalArgumentException("signature algorithm doesn't match the key");
+        }
+        this.signatureAlgorithm = signatureAlgorithm;
+    }
+
+    /**
+     * Returns the algorithm used to sign the licenses.
+     */
+    public SignatureAlgorithm getSignatureAlgorithm() {
+        return this.signatureAlgorithm;
+    }
+
+    /**
+     * Sets the identifier of our key recorded in the {@link License#KEY_ID} property of the signed licenses. By default,
+     * no key identifier is recorded. Usually the default key identifier of the public key, see
+     * {@link LicenseVerifier#getKeyId()}.
+     * 
+     * @param keyId
+     *            the key identifier or null to not record it.
+     * @see LicenseKeyring
+     */
+    public void setKeyId(String keyId) {
+        this.keyId = keyId;
+    }
+
+    /**
+     * Returns the identifier of our key recorded in the signed licenses.
+     * 
+     * @return the key identifier or null if not recorded.
+     */
+    public String getKeyId() {
+        return this.keyId;
+    }
+
+    /**
+     * Read the content of an encrypted license file. If a cache is defined, the license is only read and verified
+     * when the file changed.
      * 
      * @param file
      *            the location to the license file.
@@ -312,40 +789,203 @@ public class LicenseManager {
             SignatureException,
             ClassNotFoundException,
             LicenseException {
+        return readLicense(file.toPath());
+    }
 
-        String base64Signature = null;
-        // Read the license file as a property file.
-        Properties prop = new Properties();
-        prop.load(new InputStreamReader(new FileInputStream(file), ENCODING));
-        License lic = new License();
-        for (Object key : prop.keySet()) {
-            String value = (String) prop.get(key);
-            if (SIGNATURE.equals(key)) {
-                base64Signature = value;
-            } else {
-                lic.setProperty((String) key, value);
+    /**
+     * Read and verify a license file. If a cache is defined, the license is only read and verified when the file
+     * changed. The file is read using a {@link FileChannel}, memory mapped if larger than the memory map threshold,
+     * and closed before returning.
+     * 
+     * @param path
+     *            the location of the license file.
+     * @return the license object.
+     * @throws IOException
+     *             if file not found or read error.
+     * @throws SignatureException
+     *             if this signature algorithm is unable to process the content of the file
+     * @throws NoSuchAlgorithmException
+     *             if the SHA algorithm doesn't exists
+     * @throws InvalidKeyException
+     *             if the public key is invalid
+     * @throws LicenseException
+     *             if the file is larger than the maximum license size or if the signature is missing or invalid.
+     * @see #setMaxLicenseSize(long)
+     * @see #setMemoryMapThreshold(long)
+     */
+    public License readLicense(Path path) throws IOException, InvalidKeyException, NoSuchAlgorithmException, SignatureException, LicenseException {
+        LicenseCache cache = this.cache;
+        if (cache != null) {
+            return cache.read(this, getCacheOwner(), path.toFile());
+        }
+        return readLicenseUncached(path);
+    }
+
+    /**
+     * Read and verify the license file without using the cache.
+     * 
+     * @see #readLicense(Path)
+     */
+    License readLicenseUncached(Path path) throws IOException, InvalidKeyException, NoSuchAlgorithmException, SignatureException, LicenseException {
+        return readLicense(readFile(path));
+    }
+
+    /**
+     * Read the content of the license file, memory mapped if larger than the memory map threshold.
+     * 
+     * @throws LicenseException
+     *             if the file is larger than the maximum license size.
+     */
+    private ByteBuffer readFile(Path path) throws IOException, LicenseException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > this.maxLicenseSize) {
+                throw new LicenseException("license file too large");
+            }
+            if (size >= this.memoryMapThreshold) {
+                // The mapping remains valid once the channel is closed.
+                return channel.map(MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // Read until the end of file.
             }
+            buffer.flip();
+            return buffer;
+        } finally {
+            channel.close();
         }
-        // Check if the signature is available.
-        if (base64Signature == null) {
-            throw new LicenseException("No signature was found");
+    }
+
+    /**
+     * Read and verify the license data.
+     * 
+     * @param data
+     *            the content of a license file.
+     * @return the license object.
+     * @see #readLicense(ByteBuffer)
+     */
+    public License readLicense(byte[] data) throws IOException, InvalidKeyException, NoSuchAlgorithmException, SignatureException, LicenseException {
+        return readLicense(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Read and verify the license data from the buffer position to its limit.
+     * 
+     * @param buffer
+     *            the content of a license file.
+     * @return the license object.
+     * @throws IOException
+     *             if the data is malformed.
+     * @throws SignatureException
+     *             if this signature algorithm is unable to process the content of the file
+     * @throws NoSuchAlgorithmException
+     *             if the SHA algorithm doesn't exists
+     * @throws InvalidKeyException
+     *             if the public key is invalid
+     * @throws LicenseException
+     *             if the signature is missing or invalid.
+     */
+    public License readLicense(ByteBuffer buffer) throws IOException, InvalidKeyException, NoSuchAlgorithmException, SignatureException, LicenseException {
+        return verify(parse(buffer));
+    }
+
+    /**
+     * Parse the license data from the buffer position to its limit without verifying the signature.
+     * 
+     * @throws LicenseException
+     *             if the data is too large or if the signature is missing.
+     */
+    private SignedLicense parse(ByteBuffer buffer) throws IOException, SignatureException, LicenseException {
+        LicenseMetrics metrics = Policy.getMetrics();
+        long start = metrics != null ? System.nanoTime() : 0;
+        Outcome outcome = Outcome.INVALID;
+        try {
+            if (buffer.remaining() > this.maxLicenseSize) {
+                throw new LicenseException("license file too large");
+            }
+
+            // Detect the format of the license.
+            SignedLicense signed = BinaryCodec.isBinary(buffer) ? BinaryCodec.read(buffer) : TextCodec.read(buffer);
+            // Check if the signature is available.
+            if (signed.signature == null) {
+                throw new LicenseException("No signature was found");
+            }
+            outcome = Outcome.SUCCESS;
+            return signed;
+        } catch (RuntimeException e) {
+            outcome = Outcome.ERROR;
+            throw e;
+        } finally {
+            if (metrics != null) {
+                metrics.record(Stage.PARSE, outcome, System.nanoTime() - start);
+            }
         }
-        byte[] sig = Base64.decode(base64Signature.getBytes());
+    }
 
-        // Check if the signature matches.
-        byte[] data = writeLicenseToByteArray(lic);
+    /**
+     * Verify the signature of the parsed license.
+     * 
+     * @return the license
+     * @throws LicenseException
+     *             if the key is unknown or if the signature is invalid.
+     */
+    private License verify(SignedLicense signed) throws InvalidKeyException, NoSuchAlgorithmException, SignatureException, LicenseException {
+        // Check if the signature matches. With a keyring, the key is selected by the license.
+        LicenseVerifier verifier = this.keyring != null ? this.keyring.getVerifier(signed.license) : this.verifier;
+        ILogger log = Policy.getLog();
+        if (verifier == null) {
+            log.log(ILogger.DEBUG, "unknown license key {}", signed.license.getProperty(License.KEY_ID));
+            throw new LicenseException("unknown license key");
+        }
+        if (!verifier.verify(signed.license, signed.signature)) {
+            log.log(ILogger.DEBUG, "invalid license signature for key {}", verifier.getKeyId());
+            throw new LicenseSignatureException();
+        }
+        log.log(ILogger.TRACE, "license signature verified with key {}", verifier.getKeyId());
+        return signed.license;
+    }
 
-        // Validate the signature
-        if (!verify(data, sig)) {
-            throw new LicenseException("invalid license signature");
+    /**
+     * Sets the maximum size of a license file. Larger files are rejected without being parsed.
+     * 
+     * @param maxLicenseSize
+     *            the maximum size in bytes (default: 1 MiB).
+     */
+    public void setMaxLicenseSize(long maxLicenseSize) {
+        if (maxLicenseSize < 0) {
+            throw new IllegalArgumentException("maxLicenseSize");
         }
+        this.maxLicenseSize = maxLicenseSize;
+    }
+
+    /**
+     * Returns the maximum size of a license file.
+     */
+    public long getMaxLicenseSize() {
+        return this.maxLicenseSize;
+    }
 
-        return lic;
+    /**
+     * Sets the size from which the license files are memory mapped instead of being read into the heap.
+     * 
+     * @param memoryMapThreshold
+     *            the size in bytes (default: 64 KiB).
+     */
+    public void setMemoryMapThreshold(long memoryMapThreshold) {
+        this.memoryMapThreshold = memoryMapThreshold;
+    }
 
+    /**
+     * Returns the size from which the license files are memory mapped.
+     */
+    public long getMemoryMapThreshold() {
+        return this.memoryMapThreshold;
     }
 
     /**
-     * Used to serialize a license object.
+     * Used to serialize a license object in the text format.
      * 
      * @param license
      *            the license object.
@@ -363,22 +1003,112 @@ public class LicenseManager {
      *             if the private key is invalid.
      */
     public void writeLicense(License lic, File file) throws IOException, InvalidKeyException, NoSuchAlgorithmException, SignatureException {
+        writeLicense(lic, file, LicenseFormat.TEXT);
+    }
+
+    /**
+     * Used to serialize a license object in the given format. Both formats are detected when reading the license.
+     * 
+     * @param license
+     *            the license object.
+     * @param file
+     *            the location where to save the new license file. If file exists, it's overwrite.
+     * @param format
+     *            the format of the license file.
+     * @see #writeLicense(License, File)
+     */
+    public void writeLicense(License lic, File file, LicenseFormat format)
+            throws IOException,
+            InvalidKeyException,
+            NoSuchAlgorithmException,
+            SignatureException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            writeLicense(lic, out, format);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Sign the license and return the content of the license file.
+     * 
+     * @see #writeLicense(License, File, LicenseFormat)
+     */
+    byte[] toByteArray(License lic, LicenseFormat format) throws IOException, InvalidKeyException, NoSuchAlgorithmException, SignatureException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeLicense(lic, out, format);
+        return out.toByteArray();
+    }
 
-        byte[] data = writeLicenseToByteArray(lic);
+    private void writeLicense(License lic, OutputStream out, LicenseFormat format)
+            throws IOException,
+            InvalidKeyException,
+            NoSuchAlgorithmException,
+            SignatureException {
+        if (privateKey == null) {
+            throw new UnsupportedOperationException("Can't sign when the private key is not available.");
+        }
+        // Sign the license data
+        SignatureAlgorithm algorithm = this.signatureAlgorithm;
+        License signed = prepare(lic, algorithm, this.keyId);
+        byte[] signature = sign(signed, algorithm);
 
-        // Then sign the byte array
-        byte[] signature = sign(data);
-        String base64signature = Base64.encode(signature);
+        // Write the license file
+        if (format == LicenseFormat.BINARY) {
+            BinaryCodec.write(out, signed, algorithm, signature);
+        } else {
+            TextCodec.write(out, signed, signature);
+        }
+    }
 
-        // Create property file
-        Properties prop = new Properties();
-        for (Entry<String, String> e : lic.getProperties().entrySet()) {
-            prop.setProperty(e.getKey(), e.getValue());
+    /**
+     * Sign and write multiple license files concurrently using all the available processors.
+     * 
+     * @param licenses
+     *            the license to be written for each destination file.
+     * @return the result of each license in the iteration order of the map.
+     * @throws InterruptedException
+     *             if interrupted while waiting.
+     * @see #writeLicenses(Map, ExecutorService)
+     */
+    public List<Future<File>> writeLicenses(Map<File, License> licenses) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            return writeLicenses(licenses, executor);
+        } finally {
+            executor.shutdown();
         }
-        prop.put(SIGNATURE, base64signature);
+    }
 
-        // Write the property file
-        prop.store(new OutputStreamWriter(new FileOutputStream(file), ENCODING), "License file");
+    /**
+     * Sign and write multiple license files concurrently using the given executor. This method waits until every
+     * license is written. A failure to write one license doesn't stop the others.
+     * 
+     * @param licenses
+     *            the license to be written for each destination file.
+     * @param executor
+     *            the executor used to sign and write the licenses.
+     * @return the result of each license in the iteration order of the map. Each future is completed and return the
+     *         destination file or throw an {@link ExecutionException} with the cause of the failure.
+     * @throws InterruptedException
+     *             if interrupted while waiting.
+     */
+    public List<Future<File>> writeLicenses(Map<File, License> licenses, ExecutorService executor) throws InterruptedException {
+        if (privateKey == null) {
+            throw new UnsupportedOperationException("Can't sign when the private key is not available.");
+        }
+        List<Callable<File>> tasks = new ArrayList<Callable<File>>(licenses.size());
+        for (final Entry<File, License> e : licenses.entrySet()) {
+            tasks.add(new Callable<File>() {
+                @Override
+                public File call() throws Exception {
+                    writeLicense(e.getValue(), e.getKey());
+                    return e.getKey();
+                }
+            });
+        }
+        return executor.invokeAll(tasks);
     }
 
     /**
@@ -391,18 +1121,7 @@ public class LicenseManager {
      */
     protected byte[] writeLicenseToByteArray(License lic) throws IOException {
         ByteArrayOutputStream dataStream = new ByteArrayOutputStream();
-        ObjectOutputStream out = new ObjectOutputStream(dataStream);
-        // Sort the key to have a predictable results.
-        List<String> keys = new ArrayList<String>(lic.getProperties().keySet());
-        Collections.sort(keys);
-        for (String key : keys) {
-            String value = lic.getProperty(key);
-            out.writeChars(key);
-            out.writeChars(value);
-        }
-        out.flush();
-        byte[] data = dataStream.toByteArray();
-        out.close();
-        return data;
+        CanonicalForm.write(dataStream, lic);
+        return dataStream.toByteArray();
     }
 }
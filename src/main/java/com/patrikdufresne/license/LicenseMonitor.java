@@ -0,0 +1,254 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.patrikdufresne.license.util.ILogger;
+import com.patrikdufresne.license.util.Policy;
+
+/**
+ * Keep the current license of a long-running application up to date. The license files are watched using a
+ * {@link WatchService}. When one of them is created, modified or deleted, the files are read and verified again on a
+ * background thread and the new license is published to the readers.
+ * <p>
+ * Like {@link LicenseManager#validate(LicenseVerifier, File...)}, the current license is the first file that can be
+ * read, verified and not expired. The version of a single-version license is not checked since the monitor doesn't
+ * know the current version. Reading the current license is a single volatile read: the application threads never
+ * read the file nor verify the signature. Since the license is published at the time it's read, an application
+ * should still call {@link ImmutableLicense#isValid(long, String)} to check the expiration and the version.
+ * <p>
+ * This class is thread-safe.
+ * 
+ * <pre>
+ * LicenseMonitor monitor = new LicenseMonitor(manager, new File(&quot;application.lic&quot;));
+ * monitor.start();
+ * ...
+ * ImmutableLicense license = monitor.getLicense();
+ * if (license == null || !license.isValid(System.currentTimeMillis(), version)) {
+ *     ...
+ * }
+ * </pre>
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public final class LicenseMonitor implements Closeable {
+
+    /**
+     * Default delay without changes before the files are read again.
+     */
+    private static final long DEFAULT_DEBOUNCE_DELAY = 250;
+
+    private final LicenseManager manager;
+
+    private final File[] files;
+
+    /**
+     * Absolute path of the watched files.
+     */
+    private final Set<Path> paths = new HashSet<Path>();
+
+    private volatile long debounceDelay = DEFAULT_DEBOUNCE_DELAY;
+
+    private volatile ImmutableLicense license;
+
+    private volatile LicenseException error;
+
+    private WatchService watchService;
+
+    /**
+     * Create a new monitor.
+     * 
+     * @param manager
+     *            the license manager used to read the files.
+     * @param files
+     *            the license files by order of priority.
+     */
+    public LicenseMonitor(LicenseManager manager, File... files) {
+        if (manager == null || files == null || files.length == 0) {
+            throw new IllegalArgumentException();
+        }
+        this.manager = manager;
+        this.files = files.clone();
+        for (File f : this.files) {
+            this.paths.add(f.toPath().toAbsolutePath().normalize());
+        }
+    }
+
+    /**
+     * Sets the delay without changes before the files are read again. A burst of changes, like a file being written
+     * in multiple steps, only triggers a single reload.
+     * 
+     * @param delay
+     *            the delay
+     * @param unit
+     *            the unit of the delay
+     */
+    public void setDebounceDelay(long delay, TimeUnit unit) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("delay");
+        }
+        this.debounceDelay = unit.toMillis(delay);
+    }
+
+    /**
+     * Read the license files and start watching them for changes.
+     * 
+     * @throws IOException
+     *             if the watch service can't be created.
+     * @throws IllegalStateException
+     *             if the monitor is already started.
+     */
+    public synchronized void start() throws IOException {
+        if (this.watchService != null) {
+            throw new IllegalStateException("already started");
+        }
+        final WatchService ws = FileSystems.getDefault().newWatchService();
+        Set<Path> dirs = new HashSet<Path>();
+        for (Path path : this.paths) {
+            Path dir = path.getParent();
+            if (dirs.add(dir)) {
+                try {
+                    dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                } catch (IOException e) {
+                    Policy.getLog().log(ILogger.WARN, "fail to watch directory {}: {}", dir, e.getMessage());
+                }
+            }
+        }
+        this.watchService = ws;
+        reload();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch(ws);
+            }
+        }, "LicenseMonitor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop watching the license files. The last license remains available.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.watchService != null) {
+            this.watchService.close();
+        }
+    }
+
+    /**
+     * Return the current license.
+     * 
+     * @return the license or null if none of the license files is valid.
+     */
+    public ImmutableLicense getLicense() {
+        return this.license;
+    }
+
+    /**
+     * Return the reason why the license files are not valid.
+     * 
+     * @return the error or null if the license is valid.
+     */
+    public LicenseException getError() {
+        return this.error;
+    }
+
+    /**
+     * Read and verify the license files immediately, in the calling thread.
+     * 
+     * @return the new license or null if none of the license files is valid.
+     */
+    public synchronized ImmutableLicense reload() {
+        LicenseException lastException = null;
+        for (File f : this.files) {
+            if (!f.exists()) {
+                continue;
+            }
+            try {
+                ImmutableLicense frozen = this.manager.readLicenseFile(f).freeze();
+                // The version is checked by the application.
+                if (frozen.isExpired(System.currentTimeMillis())) {
+                    throw new LicenseExpiredException();
+                }
+                this.error = null;
+                this.license = frozen;
+                return frozen;
+            } catch (LicenseException e) {
+                lastException = e;
+            } catch (Exception e) {
+                lastException = new LicenseException("invalid licence file", e);
+            }
+        }
+        this.error = lastException != null ? lastException : new LicenseException("license file not found");
+        this.license = null;
+        return null;
+    }
+
+    /**
+     * Wait for changes and reload the license files once no more changes are received during the debounce delay.
+     */
+    private void watch(WatchService ws) {
+        try {
+            for (;;) {
+                if (!process(ws.take())) {
+                    continue;
+                }
+                WatchKey key;
+                while ((key = ws.poll(this.debounceDelay, TimeUnit.MILLISECONDS)) != null) {
+                    process(key);
+                }
+                reload();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Monitor closed.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Consume the events of the key.
+     * 
+     * @return True if one of the license files changed.
+     */
+    private boolean process(WatchKey key) {
+        Path dir = (Path) key.watchable();
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || this.paths.contains(dir.resolve((Path) event.context()))) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+}
@@ -0,0 +1,540 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory registry of the verified licenses of many tenants. The licenses are indexed by {@link License#ID} and
+ * may also be found by {@link License#LICENSE_NUMBER} and {@link License#EMAIL} once loaded. Missing licenses are
+ * loaded with a {@link Loader}, e.g. {@link #fileLoader(LicenseManager, File)}; concurrent requests for the same
+ * tenant wait for a single load.
+ * <p>
+ * The registry is bounded: the least recently used licenses are evicted when the maximum size is reached and the
+ * licenses are loaded again once expired. The entries are split into segments, each one with its own lock, to reduce
+ * the contention.
+ * <p>
+ * This class is thread-safe.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public final class LicenseRegistry {
+
+    /**
+     * Load the license of a tenant.
+     */
+    public interface Loader {
+
+        /**
+         * Load and verify the license.
+         * 
+         * @param id
+         *            the license identifier.
+         * @return the license or null if not found.
+         * @throws LicenseException
+         *             if the license can't be read or is not valid.
+         */
+        ImmutableLicense load(String id) throws LicenseException;
+
+    }
+
+    /**
+     * Maximum number of segments.
+     */
+    private static final int MAX_SEGMENTS = 16;
+
+    /**
+     * Return a loader reading the license files named <code>&lt;id&gt;.lic</code> in the given directory. The license
+     * is rejected if its {@link License#ID} doesn't match the name of the file, so a license copied into the file of
+     * another tenant is never served for that tenant.
+     * 
+     * @param manager
+     *            the license manager used to read the files.
+     * @param directory
+     *            the location of the license files.
+     * @return the loader
+     */
+    public static Loader fileLoader(final LicenseManager manager, final File directory) {
+        if (manager == null || directory == null) {
+            throw new IllegalArgumentException();
+        }
+        return new Loader() {
+            @Override
+            public ImmutableLicense load(String id) throws LicenseException {
+                // Never resolve a file outside the directory.
+                if (id.isEmpty() || id.indexOf('/') >= 0 || id.indexOf('\\') >= 0 || id.indexOf(':') >= 0 || id.startsWith(".")) {
+                    return null;
+                }
+                File file = new File(directory, id + ".lic");
+                if (!file.isFile()) {
+                    return null;
+                }
+                License license;
+                try {
+                    license = manager.readLicenseFile(file);
+                } catch (LicenseException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new LicenseException("invalid licence file", e);
+                }
+                if (!id.equals(license.getProperty(License.ID))) {
+                    throw new LicenseException("license id doesn't match the file name");
+                }
+                return license.freeze();
+            }
+        };
+    }
+
+    /**
+     * Entry of the registry. The license is available once the load is completed.
+     */
+    private final class Node {
+
+        final String id;
+
+        final FutureTask<ImmutableLicense> future;
+
+        volatile ImmutableLicense license;
+
+        /**
+         * Time of the end of the load in nanoseconds.
+         */
+        volatile long loadedAt;
+
+        Node(final String id) {
+            this.id = id;
+            this.future = new FutureTask<ImmutableLicense>(new Callable<ImmutableLicense>() {
+                @Override
+                public ImmutableLicense call() throws LicenseException {
+                    long start = System.nanoTime();
+                    try {
+                        return completed(Node.this, loader.load(id));
+                    } finally {
+                        loadCount.incrementAndGet();
+                        totalLoadTime.addAndGet(System.nanoTime() - start);
+                    }
+                }
+            });
+        }
+
+        Node(final ImmutableLicense license) {
+            this.id = license.getProperty(License.ID);
+            this.future = new FutureTask<ImmutableLicense>(new Callable<ImmutableLicense>() {
+                @Override
+                public ImmutableLicense call() {
+                    return license;
+                }
+            });
+            this.future.run();
+            this.license = license;
+            this.loadedAt = System.nanoTime();
+        }
+
+    }
+
+    /**
+     * Segment of the registry: a map in access order guarded by itself.
+     */
+    private final class Segment extends LinkedHashMap<String, Node> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Node> eldest) {
+            if (size() > this.capacity) {
+                evictionCount.incrementAndGet();
+                unindex(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+    private final Loader loader;
+
+    private final Segment[] segments;
+
+    /**
+     * Time to live of the licenses in nanoseconds. Zero if the licenses never expire.
+     */
+    private final long expireAfter;
+
+    private final ConcurrentMap<String, Node> byLicenseNumber = new ConcurrentHashMap<String, Node>();
+
+    private final ConcurrentMap<String, Node> byEmail = new ConcurrentHashMap<String, Node>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong loadCount = new AtomicLong();
+
+    private final AtomicLong totalLoadTime = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Create a new registry.
+     * 
+     * @param loader
+     *            the loader used to load the missing licenses.
+     * @param maximumSize
+     *            the maximum number of licenses.
+     * @param expireAfter
+     *            the time to live of a license after being loaded, zero to keep the licenses until evicted.
+     * @param unit
+     *            the unit of the time to live.
+     */
+    public LicenseRegistry(Loader loader, int maximumSize, long expireAfter, TimeUnit unit) {
+        if (loader == null || maximumSize <= 0 || expireAfter < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.loader = loader;
+        this.expireAfter = unit.toNanos(expireAfter);
+        int count = 1;
+        while (count < MAX_SEGMENTS && count * 2 <= maximumSize) {
+            count *= 2;
+        }
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            // Distribute the capacity without exceeding the maximum size.
+            this.segments[i] = new Segment(maximumSize / count + (i < maximumSize % count ? 1 : 0));
+        }
+    }
+
+    private Segment segmentFor(String id) {
+        int h = id.hashCode();
+        h ^= (h >>> 16);
+        return this.segments[h & (this.segments.length - 1)];
+    }
+
+    private boolean isExpired(Node node, long now) {
+        return this.expireAfter > 0 && node.loadedAt != 0 && now - node.loadedAt > this.expireAfter;
+    }
+
+    /**
+     * Return the license of the given tenant, loading it if required.
+     * 
+     * @param id
+     *            the license identifier.
+     * @return the license or null if not found.
+     * @throws LicenseException
+     *             if the license can't be loaded.
+     */
+    public ImmutableLicense get(String id) throws LicenseException {
+        Segment segment = segmentFor(id);
+        Node node;
+        boolean created = false;
+        synchronized (segment) {
+            node = segment.get(id);
+            if (node != null && isExpired(node, System.nanoTime())) {
+                segment.remove(id);
+                unindex(node);
+                node = null;
+            }
+            if (node == null) {
+                node = new Node(id);
+                segment.put(id, node);
+                created = true;
+            }
+        }
+        if (!created) {
+            this.hitCount.incrementAndGet();
+            if (node.license != null) {
+                return node.license;
+            }
+        } else {
+            this.missCount.incrementAndGet();
+            node.future.run();
+        }
+        try {
+            ImmutableLicense license = node.future.get();
+            if (license == null) {
+                remove(node);
+            }
+            return license;
+        } catch (ExecutionException e) {
+            remove(node);
+            Throwable cause = e.getCause();
+            if (cause instanceof LicenseException) {
+                throw (LicenseException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new LicenseException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LicenseException("interrupted while loading the license", e);
+        }
+    }
+
+    /**
+     * Return the loaded license with the given license number.
+     * 
+     * @param licenseNumber
+     *            the license number.
+     * @return the license or null if not loaded.
+     */
+    public ImmutableLicense getByLicenseNumber(String licenseNumber) {
+        return getIndexed(this.byLicenseNumber.get(licenseNumber));
+    }
+
+    /**
+     * Return the loaded license with the given email. When multiple licenses share the same email, the last one loaded
+     * is returned.
+     * 
+     * @param email
+     *            the email.
+     * @return the license or null if not loaded.
+     */
+    public ImmutableLicense getByEmail(String email) {
+        return getIndexed(this.byEmail.get(email));
+    }
+
+    private ImmutableLicense getIndexed(Node node) {
+        if (node == null) {
+            this.missCount.incrementAndGet();
+            return null;
+        }
+        Segment segment = segmentFor(node.id);
+        synchronized (segment) {
+            // Refresh the access order.
+            if (segment.get(node.id) != node || isExpired(node, System.nanoTime())) {
+                node = null;
+            }
+        }
+        if (node == null) {
+            this.missCount.incrementAndGet();
+            return null;
+        }
+        this.hitCount.incrementAndGet();
+        return node.license;
+    }
+
+    /**
+     * Add a verified license to the registry, replacing the license with the same identifier.
+     * 
+     * @param license
+     *            the license.
+     * @throws IllegalArgumentException
+     *             if the license doesn't have an identifier.
+     */
+    public void put(ImmutableLicense license) {
+        if (license.getProperty(License.ID) == null) {
+            throw new IllegalArgumentException("license without id");
+        }
+        Node node = new Node(license);
+        Segment segment = segmentFor(node.id);
+        synchronized (segment) {
+            Node previous = segment.put(node.id, node);
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(node, license);
+        }
+    }
+
+    /**
+     * Remove the license of the given tenant.
+     * 
+     * @param id
+     *            the license identifier.
+     */
+    public void invalidate(String id) {
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            Node node = segment.remove(id);
+            if (node != null) {
+                unindex(node);
+            }
+        }
+    }
+
+    /**
+     * Remove all the licenses.
+     */
+    public void clear() {
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                for (Node node : segment.values()) {
+                    unindex(node);
+                }
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Remove the expired licenses. Expired licenses are otherwise removed when accessed.
+     */
+    public void cleanUp() {
+        long now = System.nanoTime();
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                Iterator<Node> it = segment.values().iterator();
+                while (it.hasNext()) {
+                    Node node = it.next();
+                    if (isExpired(node, now)) {
+                        it.remove();
+                        unindex(node);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the number of licenses in the registry, including the licenses being loaded.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Return the number of lookups returning a license already loaded or being loaded.
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * Return the number of lookups of a license not loaded.
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * Return the number of calls to the loader.
+     */
+    public long getLoadCount() {
+        return this.loadCount.get();
+    }
+
+    /**
+     * Return the total time spent in the loader.
+     * 
+     * @param unit
+     *            the unit of the returned value.
+     */
+    public long getTotalLoadTime(TimeUnit unit) {
+        return unit.convert(this.totalLoadTime.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Return the average time spent in the loader.
+     * 
+     * @param unit
+     *            the unit of the returned value.
+     */
+    public long getAverageLoadTime(TimeUnit unit) {
+        long count = this.loadCount.get();
+        return count == 0 ? 0 : unit.convert(this.totalLoadTime.get() / count, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Return the number of licenses evicted because the registry was full.
+     */
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    /**
+     * Called by the loader thread once the license is loaded.
+     */
+    private ImmutableLicense completed(Node node, ImmutableLicense license) {
+        if (license == null) {
+            return null;
+        }
+        Segment segment = segmentFor(node.id);
+        synchronized (segment) {
+            node.license = license;
+            node.loadedAt = System.nanoTime();
+            // Only index the node if it was not evicted while loading.
+            if (segment.get(node.id) == node) {
+                index(node, license);
+            }
+        }
+        return license;
+    }
+
+    /**
+     * Remove the node if it's still in the registry.
+     */
+    private void remove(Node node) {
+        Segment segment = segmentFor(node.id);
+        synchronized (segment) {
+            if (segment.get(node.id) == node) {
+                segment.remove(node.id);
+                unindex(node);
+            }
+        }
+    }
+
+    private void index(Node node, ImmutableLicense license) {
+        String licenseNumber = license.getProperty(License.LICENSE_NUMBER);
+        if (licenseNumber != null) {
+            this.byLicenseNumber.put(licenseNumber, node);
+        }
+        String email = license.getProperty(License.EMAIL);
+        if (email != null) {
+            this.byEmail.put(email, node);
+        }
+    }
+
+    private void unindex(Node node) {
+        ImmutableLicense license = node.license;
+        if (license == null) {
+            return;
+        }
+        String licenseNumber = license.getProperty(License.LICENSE_NUMBER);
+        if (licenseNumber != null) {
+            this.byLicenseNumber.remove(licenseNumber, node);
+        }
+        String email = license.getProperty(License.EMAIL);
+        if (email != null) {
+            this.byEmail.remove(email, node);
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+/**
+ * Thrown when the signature of a license doesn't match its content, i.e.: the license file was modified or signed
+ * with another key.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class LicenseSignatureException extends LicenseException {
+
+    private static final long serialVersionUID = 4213507338214476861L;
+
+    /**
+     * Constructs a new exception with a default detail message.
+     */
+    public LicenseSignatureException() {
+        super("invalid license signature");
+    }
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+/**
+ * The type of license. Define how the license is validated.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public enum LicenseType {
+
+    /**
+     * Lifetime license. Always valid.
+     */
+    LIFETIME(License.TYPE_LIFETIME),
+
+    /**
+     * Single version license. Valid for the versions matching the version property.
+     */
+    SINGLE_VERSION(License.TYPE_SINGLE_VERSION),
+
+    /**
+     * Trial license. Valid until the expiration date.
+     */
+    TRIAL(License.TYPE_TRIAL),
+
+    /**
+     * License type not defined or unknown. Neither the expiration date nor the version are validated.
+     */
+    OTHER(null);
+
+    /**
+     * Return the license type matching the given property value.
+     * 
+     * @param value
+     *            the value of the {@link License#LICENSE_TYPE} property.
+     * @return the license type or {@link #OTHER} if unknown.
+     */
+    public static LicenseType fromValue(String value) {
+        for (LicenseType type : values()) {
+            if (type.value != null && type.value.equals(value)) {
+                return type;
+            }
+        }
+        return OTHER;
+    }
+
+    private final String value;
+
+    private LicenseType(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Return the value of the {@link License#LICENSE_TYPE} property.
+     * 
+     * @return the property value or null for {@link #OTHER}.
+     */
+    public String getValue() {
+        return value;
+    }
+
+}
@@ -0,0 +1,355 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.RSAKey;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.patrikdufresne.license.util.LicenseMetrics;
+import com.patrikdufresne.license.util.LicenseMetrics.Outcome;
+import com.patrikdufresne.license.util.LicenseMetrics.Stage;
+import com.patrikdufresne.license.util.Policy;
+
+/**
+ * Immutable object used to verify license signatures with a public key. A verifier is created once per public key
+ * and may be shared by any number of threads and license managers.
+ * <p>
+ * Instances are obtained with {@link #getInstance(byte[])} which keeps a process-wide cache of verifiers indexed by
+ * the key fingerprint, so the same public key is never decoded twice.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public final class LicenseVerifier {
+
+    /**
+     * Algorithm used to compute the key fingerprint.
+     */
+    private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+
+    /**
+     * Number of hexadecimal digits of the fingerprint used as key identifier.
+     */
+    private static final int KEY_ID_LENGTH = 16;
+
+    /**
+     * Initial size of the buffer used to decode the signature. Large enough for a 4096 bits RSA key.
+     */
+    private static final int SIGNATURE_BUFFER_SIZE = 512;
+
+    /**
+     * Buffer used by each thread to decode the signature.
+     */
+    private static final ThreadLocal<byte[]> SIGNATURE_BUFFER = new ThreadLocal<byte[]>();
+
+    /**
+     * Process-wide cache of verifiers indexed by key fingerprint.
+     */
+    private static final ConcurrentMap<String, LicenseVerifier> VERIFIERS = new ConcurrentHashMap<String, LicenseVerifier>();
+
+    /**
+     * Return the verifier for the given public key.
+     * 
+     * @param publicKey
+     *            the public key in DER format (can't be null).
+     * @return the verifier
+     * @throws GeneralSecurityException
+     *             if the public key is invalid.
+     */
+    public static LicenseVerifier getInstance(byte[] publicKey) throws GeneralSecurityException {
+        if (publicKey == null) {
+            throw new NullPointerException("publicKey");
+        }
+        String fingerprint = fingerprint(publicKey);
+        LicenseVerifier verifier = VERIFIERS.get(fingerprint);
+        if (verifier == null) {
+            verifier = new LicenseVerifier(SignatureAlgorithm.decodePublicKey(publicKey), fingerprint);
+            LicenseVerifier previous = VERIFIERS.putIfAbsent(fingerprint, verifier);
+            if (previous != null) {
+                verifier = previous;
+            }
+        }
+        return verifier;
+    }
+
+    /**
+     * Return the verifier for the public key read from the given stream.
+     * 
+     * @param publicKey
+     *            an input stream containing the public key in DER format.
+     * @return the verifier
+     * @throws GeneralSecurityException
+     *             if the public key is invalid.
+     * @throws IOException
+     *             if the stream can't be read.
+     */
+    public static LicenseVerifier getInstance(InputStream publicKey) throws GeneralSecurityException, IOException {
+        return getInstance(LicenseManager.readAll(publicKey));
+    }
+
+    /**
+     * Compute the fingerprint of an encoded key.
+     * 
+     * @return the hexadecimal representation of the key digest.
+     */
+    static String fingerprint(byte[] encodedKey) throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance(FINGERPRINT_ALGORITHM).digest(encodedKey);
+        StringBuilder buf = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            buf.append(Character.forDigit((b >> 4) & 0xf, 16));
+            buf.append(Character.forDigit(b & 0xf, 16));
+        }
+        return buf.toString();
+    }
+
+    private final PublicKey publicKey;
+
+    private final String fingerprint;
+
+    private final String keyId;
+
+    /**
+     * Default algorithm for the public key.
+     */
+    private final SignatureAlgorithm signatureAlgorithm;
+
+    /**
+     * Signatures initialized for verification with our public key, indexed by algorithm. One array per thread since
+     * {@link Signature} is not thread-safe.
+     */
+    private final ThreadLocal<Signature[]> verifySignatures = new ThreadLocal<Signature[]>();
+
+    private LicenseVerifier(PublicKey publicKey, String fingerprint) {
+        this.publicKey = publicKey;
+        this.fingerprint = fingerprint;
+        this.keyId = fingerprint.substring(0, KEY_ID_LENGTH);
+        this.signatureAlgorithm = SignatureAlgorithm.forKey(publicKey);
+    }
+
+    /**
+     * Return the public key.
+     */
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    /**
+     * Return the fingerprint of the public key. i.e.: the hexadecimal SHA-256 digest of the encoded key.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Return the default identifier of the public key. i.e.: the first 16 hexadecimal digits of the fingerprint.
+     * 
+     * @see LicenseKeyring
+     */
+    public String getKeyId() {
+        return keyId;
+    }
+
+    /**
+     * Return the default signature algorithm for the public key.
+     */
+    public SignatureAlgorithm getSignatureAlgorithm() {
+        return signatureAlgorithm;
+    }
+
+    /**
+     * Use to check if the given data matches the given signature using the default algorithm of the public key.
+     * 
+     * @param data
+     *            the data
+     * @param sig
+     *            the signature associated with the data.
+     * 
+     * @throws NoSuchAlgorithmException
+     *             if the signature algorithm is not supported.
+     * @throws InvalidKeyException
+     *             if the key is invalid.
+     * @throws SignatureException
+     *             if this signature algorithm is unable to process the input data
+     */
+    public boolean verify(byte[] data, byte[] sig) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        return verify(signatureAlgorithm, data, sig);
+    }
+
+    /**
+     * Use to check if the given data matches the given signature using the given algorithm.
+     */
+    boolean verify(SignatureAlgorithm algorithm, byte[] data, byte[] sig) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        Signature rsaSignature = getSignature(algorithm);
+        boolean reset = false;
+        try {
+            // Update the signature algorithm with the data.
+            rsaSignature.update(data);
+
+            // Validate the signature. This call reset the signature object for the next verification.
+            boolean valid = rsaSignature.verify(sig);
+            reset = true;
+            return valid;
+        } finally {
+            // The state of the signature is undefined after a failure, discard it.
+            if (!reset) {
+                discardSignature(algorithm);
+            }
+        }
+    }
+
+    /**
+     * Use to check if the license matches the given signature. The canonical form of the license is streamed into
+     * the signature algorithm without intermediate copies. The algorithm is the one recorded in the license. The
+     * license is not valid if the algorithm is unknown or doesn't match the public key.
+     * 
+     * @param license
+     *            the license
+     * @param sig
+     *            the signature associated with the license.
+     * @see #verify(byte[], byte[])
+     */
+    public boolean verify(License license, byte[] sig) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        return verify(license, sig, 0, sig.length);
+    }
+
+    /**
+     * Use to check if the license matches the given Base64 signature. The signature is decoded into a buffer reused by
+     * each thread, so no temporary array is created.
+     * 
+     * @param license
+     *            the license
+     * @param base64Signature
+     *            the Base64 encoded signature associated with the license.
+     * @throws SignatureException
+     *             if the signature is not valid Base64 or if this signature algorithm is unable to process the data.
+     * @see #verify(byte[], byte[])
+     */
+    public boolean verify(License license, CharSequence base64Signature) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        int length;
+        byte[] buf = SIGNATURE_BUFFER.get();
+        try {
+            length = Base64.decodedLength(base64Signature);
+            if (buf == null || buf.length < length) {
+                buf = new byte[Math.max(length, SIGNATURE_BUFFER_SIZE)];
+                SIGNATURE_BUFFER.set(buf);
+            }
+            Base64.decode(base64Signature, buf, 0);
+        } catch (IllegalArgumentException e) {
+            throw new SignatureException("invalid Base64 signature", e);
+        }
+        return verify(license, buf, 0, length);
+    }
+
+    private boolean verify(License license, byte[] sig, int off, int len) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        SignatureAlgorithm algorithm = SignatureAlgorithm.fromName(license.getProperty(License.SIGNATURE_ALGORITHM));
+        LicenseMetrics metrics = Policy.getMetrics();
+        if (algorithm == null || !algorithm.supports(publicKey)) {
+            if (metrics != null) {
+                metrics.record(Stage.VERIFY, Outcome.INVALID, 0);
+            }
+            return false;
+        }
+        Signature rsaSignature = getSignature(algorithm);
+        boolean reset = false;
+        long start = metrics != null ? System.nanoTime() : 0;
+        Outcome outcome = Outcome.ERROR;
+        try {
+            CanonicalForm.update(rsaSignature, license);
+            if (metrics != null) {
+                long now = System.nanoTime();
+                metrics.record(Stage.CANONICALIZE, Outcome.SUCCESS, now - start);
+                start = now;
+            }
+            boolean valid = rsaSignature.verify(sig, off, len);
+            reset = true;
+            outcome = valid ? Outcome.SUCCESS : Outcome.INVALID;
+            return valid;
+        } catch (SignatureException e) {
+            outcome = Outcome.INVALID;
+            throw e;
+        } finally {
+            if (!reset) {
+                discardSignature(algorithm);
+            }
+            if (metrics != null) {
+                metrics.record(Stage.VERIFY, outcome, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Verify the given license with a dummy signature to load the provider and compile the verification code. Unlike
+     * {@link #verify(License, byte[])}, the metrics are not notified.
+     * 
+     * @see LicenseManager#prewarm()
+     */
+    void prewarm(License license) throws NoSuchAlgorithmException, InvalidKeyException {
+        // Use a dummy signature of the size of the RSA modulus so the verification is not rejected early.
+        int length = publicKey instanceof RSAKey ? (((RSAKey) publicKey).getModulus().bitLength() + 7) / 8 : 64;
+        byte[] sig = new byte[length];
+        Arrays.fill(sig, (byte) 1);
+        Signature rsaSignature = getSignature(signatureAlgorithm);
+        boolean reset = false;
+        try {
+            CanonicalForm.update(rsaSignature, license);
+            rsaSignature.verify(sig);
+            reset = true;
+        } catch (SignatureException e) {
+            // Expected with a dummy signature.
+        } finally {
+            if (!reset) {
+                discardSignature(signatureAlgorithm);
+            }
+        }
+    }
+
+    /**
+     * Return the signing algorithm initialized with our public key for the current thread.
+     */
+    private Signature getSignature(SignatureAlgorithm algorithm) throws NoSuchAlgorithmException, InvalidKeyException {
+        Signature[] signatures = verifySignatures.get();
+        if (signatures == null) {
+            signatures = new Signature[SignatureAlgorithm.values().length];
+            verifySignatures.set(signatures);
+        }
+        Signature rsaSignature = signatures[algorithm.ordinal()];
+        if (rsaSignature == null) {
+            rsaSignature = algorithm.newSignature();
+            rsaSignature.initVerify(publicKey);
+            signatures[algorithm.ordinal()] = rsaSignature;
+        }
+        return rsaSignature;
+    }
+
+    private void discardSignature(SignatureAlgorithm algorithm) {
+        Signature[] signatures = verifySignatures.get();
+        if (signatures != null) {
+            signatures[algorithm.ordinal()] = null;
+        }
+    }
+
+}
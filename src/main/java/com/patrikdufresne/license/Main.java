@@ -12,13 +12,30 @@
  */
 package com.patrikdufresne.license;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.GeneralSecurityException;
+import java.security.SignatureException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Main entry point when this library is executed from command line.
@@ -28,6 +45,25 @@ import java.util.Date;
  */
 public class Main {
 
+    /**
+     * Record field used to define the license file name in batch mode. Not stored in the license.
+     */
+    private static final String FILE = "file";
+
+    /**
+     * Maximum number of characters read from stdin to guess the format of the records in batch mode.
+     */
+    private static final int FORMAT_READ_AHEAD = 8192;
+
+    /**
+     * Validation status reported by batch-validate.
+     */
+    private static final String VALID = "valid";
+    private static final String EXPIRED = "expired";
+    private static final String VERSION_EXPIRED = "version-expired";
+    private static final String BAD_SIGNATURE = "bad-signature";
+    private static final String ERROR = "error";
+
     public static void create(String publicKey, String privateKey, String name, String email, String expiration, String output)
             throws GeneralSecurityException,
             IOException {
@@ -61,6 +97,299 @@ public class Main {
 
     }
 
+    /**
+     * Create a license file for each record of the input. The records are read one at a time and signed concurrently
+     * using the given number of threads, so the input may contains any number of records.
+     * 
+     * @param input
+     *            a CSV or JSON-lines file (*.json, *.jsonl) or "-" to read from stdin.
+     * @param output
+     *            the directory where to create the license files.
+     * @param threads
+     *            number of threads used to sign the licenses.
+     * @return the number of licenses that couldn't be created.
+     */
+    public static int batchCreate(String publicKey, String privateKey, String input, String output, int threads)
+            throws GeneralSecurityException,
+            IOException,
+            InterruptedException {
+        if (publicKey == null) {
+            throw new IllegalArgumentException("public key is missing");
+        }
+        if (privateKey == null) {
+            throw new IllegalArgumentException("private key is missing");
+        }
+        if (input == null) {
+            throw new IllegalArgumentException("input is missing");
+        }
+        if (output == null) {
+            throw new IllegalArgumentException("output directory is missing");
+        }
+        checkThreads(threads);
+        File folder = new File(output);
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("can't create directory " + output);
+        }
+
+        // A single license manager is shared by all threads.
+        final LicenseManager manager = new LicenseManager(publicKey, privateKey);
+
+        ThreadPoolExecutor executor = newBoundedExecutor(threads);
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        InputStream in = "-".equals(input) ? System.in : new FileInputStream(input);
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+            // Skip the byte order mark.
+            reader.mark(1);
+            if (reader.read() != '\uFEFF') {
+                reader.reset();
+            }
+            boolean json = input.endsWith(".json") || input.endsWith(".jsonl");
+            if ("-".equals(input)) {
+                // Guess the format from the first non blank character.
+                reader.mark(FORMAT_READ_AHEAD);
+                int c;
+                int n = 0;
+                do {
+                    c = reader.read();
+                } while (++n < FORMAT_READ_AHEAD && Character.isWhitespace(c));
+                json = c == '{';
+                reader.reset();
+            }
+            RecordReader records = RecordReader.create(reader, json);
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+            int count = 0;
+            while (true) {
+                final int number = ++count;
+                Map<String, String> record;
+                try {
+                    record = records.next();
+                } catch (IOException e) {
+                    // Malformed record, resume with the next line.
+                    System.err.println("record " + number + ": " + e.getMessage());
+                    failed.incrementAndGet();
+                    records.skipLine();
+                    continue;
+                }
+                if (record == null) {
+                    break;
+                }
+                final License license;
+                try {
+                    license = createLicense(record, dateFormat);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("record " + number + ": " + e.getMessage());
+                    failed.incrementAndGet();
+                    continue;
+                }
+                String filename = record.get(FILE);
+                if (filename == null) {
+                    filename = license.getProperty(License.LICENSE_NUMBER);
+                    if (filename == null) {
+                        filename = license.getProperty(License.ID);
+                    }
+                    filename = (filename == null ? Integer.toString(number) : filename) + ".lic";
+                }
+                if (!isPlainFileName(filename)) {
+                    System.err.println("record " + number + ": invalid file name " + filename);
+                    failed.incrementAndGet();
+                    continue;
+                }
+                final File file = new File(folder, filename);
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            manager.writeLicense(license, file);
+                            created.incrementAndGet();
+                        } catch (Exception e) {
+                            System.err.println("record " + number + ": " + e.getMessage());
+                            failed.incrementAndGet();
+                        }
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            if (in != System.in) {
+                in.close();
+            }
+        }
+        System.out.println(created.get() + " licenses created, " + failed.get() + " failed");
+        return failed.get();
+    }
+
+    /**
+     * Validate every license file (*.lic) found in the given directory tree. The files are validated concurrently using
+     * the given number of threads. A report line is written for each file with the status (valid, expired,
+     * version-expired, bad-signature or error), the validation time in microseconds and the file path separated by
+     * tabs. The status bad-signature is reported when the signature doesn't match the content of the file, error when
+     * the file can't be read or is malformed, too large or not signed. A summary is written to stderr.
+     * 
+     * @param directory
+     *            the directory to walk.
+     * @param version
+     *            the current version used to validate single-version licenses.
+     * @param report
+     *            the stream where to write the report.
+     * @param threads
+     *            number of threads used to validate the licenses.
+     * @return the number of licenses that are not valid.
+     */
+    public static int batchValidate(String publicKey, String directory, final String version, final PrintStream report, int threads)
+            throws GeneralSecurityException,
+            IOException,
+            InterruptedException {
+        if (publicKey == null) {
+            throw new IllegalArgumentException("public key is missing");
+        }
+        if (directory == null || !new File(directory).isDirectory()) {
+            throw new IllegalArgumentException("directory is missing");
+        }
+        checkThreads(threads);
+
+        // A single license manager is shared by all threads.
+        final LicenseManager manager = new LicenseManager(new File(publicKey), null);
+
+        final ThreadPoolExecutor executor = newBoundedExecutor(threads);
+        final AtomicInteger total = new AtomicInteger();
+        final AtomicInteger invalid = new AtomicInteger();
+        final AtomicLong totalTime = new AtomicLong();
+        final AtomicLong maxTime = new AtomicLong();
+        long start = System.nanoTime();
+        try {
+            Files.walkFileTree(new File(directory).toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(final Path path, BasicFileAttributes attrs) {
+                    if (!attrs.isRegularFile() || !path.getFileName().toString().endsWith(".lic")) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            long time = System.nanoTime();
+                            String status = validate(manager, path.toFile(), version);
+                            time = System.nanoTime() - time;
+                            total.incrementAndGet();
+                            if (!VALID.equals(status)) {
+                                invalid.incrementAndGet();
+                            }
+                            totalTime.addAndGet(time);
+                            long max;
+                            while ((max = maxTime.get()) < time && !maxTime.compareAndSet(max, time)) {
+                                // Retry
+                            }
+                            report.println(status + "\t" + TimeUnit.NANOSECONDS.toMicros(time) + "\t" + path);
+                        }
+                    });
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path path, IOException e) {
+                    report.println(ERROR + "\t0\t" + path);
+                    total.incrementAndGet();
+                    invalid.incrementAndGet();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // Print summary
+        int count = total.get();
+        System.err.println(count + " licenses validated, " + invalid.get() + " invalid");
+        System.err.println("elapsed: " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms, throughput: " + (elapsed > 0 ? count * 1000000000L / elapsed : 0)
+                + " licenses/s");
+        System.err.println("latency: mean " + (count > 0 ? TimeUnit.NANOSECONDS.toMicros(totalTime.get() / count) : 0) + " us, max "
+                + TimeUnit.NANOSECONDS.toMicros(maxTime.get()) + " us");
+        return invalid.get();
+    }
+
+    /**
+     * Validate a single license file.
+     * 
+     * @return the validation status.
+     */
+    private static String validate(LicenseManager manager, File file, String version) {
+        License license;
+        try {
+            license = manager.readLicenseFile(file);
+        } catch (LicenseSignatureException | SignatureException e) {
+            // The signature doesn't match or can't be decoded.
+            return BAD_SIGNATURE;
+        } catch (Exception e) {
+            return ERROR;
+        }
+        try {
+            license.validate(new Date(), version);
+        } catch (LicenseExpiredException e) {
+            return EXPIRED;
+        } catch (LicenseVersionExpiredException e) {
+            return VERSION_EXPIRED;
+        } catch (Exception e) {
+            return ERROR;
+        }
+        return VALID;
+    }
+
+    /**
+     * Check if the given name may be used as a file name in the output directory. Reject the names containing a path
+     * separator or starting with a dot so a record never writes outside the output directory.
+     */
+    private static boolean isPlainFileName(String name) {
+        return !name.isEmpty() && name.indexOf('/') < 0 && name.indexOf('\\') < 0 && name.indexOf(':') < 0 && !name.startsWith(".");
+    }
+
+    private static void checkThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("number of threads must be greater than 0");
+        }
+    }
+
+    /**
+     * Create an executor with a bounded queue. When the queue is full, the submitting thread executes the task
+     * itself. This bound the memory used by the pending tasks.
+     */
+    private static ThreadPoolExecutor newBoundedExecutor(int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(threads * 16),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Create a license object from a record. The license type default to trial.
+     * 
+     * @throws IllegalArgumentException
+     *             if the record is not valid.
+     */
+    private static License createLicense(Map<String, String> record, SimpleDateFormat dateFormat) {
+        License license = new License();
+        for (Entry<String, String> e : record.entrySet()) {
+            if (!FILE.equals(e.getKey())) {
+                license.setProperty(e.getKey(), e.getValue());
+            }
+        }
+        if (license.getProperty(License.LICENSE_TYPE) == null) {
+            license.setProperty(License.LICENSE_TYPE, License.TYPE_TRIAL);
+        }
+        String expiration = license.getProperty(License.EXPIRATION);
+        if (expiration != null) {
+            try {
+                license.setExpiration(dateFormat.parse(expiration));
+            } catch (ParseException e) {
+                throw new IllegalArgumentException("Wrong date value: " + expiration);
+            }
+        } else if (License.TYPE_TRIAL.equals(license.getProperty(License.LICENSE_TYPE))) {
+            throw new IllegalArgumentException("expiration date is missing");
+        }
+        return license;
+    }
+
     public static void main(String[] args) throws GeneralSecurityException {
         if (args.length == 0) {
             usage();
@@ -73,9 +402,14 @@ public class Main {
         String email = "";
         String expiration = null;
         String file = "application.lic";
+        String input = null;
+        String output = null;
+        String version = "";
+        int threads = Runtime.getRuntime().availableProcessors();
 
         String action = args[0];
-        if (!action.equals("create") && !action.equals("validate")) {
+        if (!action.equals("create") && !action.equals("validate") && !action.equals("batch-create")
+                && !action.equals("batch-validate")) {
             usage();
             return;
         }
@@ -112,6 +446,32 @@ public class Main {
                 idx++;
                 file = args[idx];
                 break;
+            case "-i":
+            case "--input":
+                idx++;
+                input = args[idx];
+                break;
+            case "-o":
+            case "--output":
+                idx++;
+                output = args[idx];
+                break;
+            case "-v":
+            case "--version":
+                idx++;
+                version = args[idx];
+                break;
+            case "-t":
+            case "--threads":
+                idx++;
+                try {
+                    threads = Integer.parseInt(args[idx]);
+                } catch (NumberFormatException e) {
+                    System.err.println("invalid number of threads: " + args[idx]);
+                    usage();
+                    return;
+                }
+                break;
             default:
                 System.err.println("unknown arguments: " + args[idx]);
                 usage();
@@ -132,10 +492,29 @@ public class Main {
                     System.exit(1);
                 }
                 System.out.println("license " + file + " valid");
+            } else if (action.equals("batch-create")) {
+                if (batchCreate(publicKey, privateKey, input, output, threads) > 0) {
+                    System.exit(1);
+                }
+            } else if (action.equals("batch-validate")) {
+                PrintStream report = output == null ? System.out : new PrintStream(output, "UTF-8");
+                int invalid;
+                try {
+                    invalid = batchValidate(publicKey, input, version, report, threads);
+                } finally {
+                    report.flush();
+                    if (report != System.out) {
+                        report.close();
+                    }
+                }
+                // Exit once the report is closed.
+                if (invalid > 0) {
+                    System.exit(1);
+                }
             } else {
                 usage();
             }
-        } catch (IOException | IllegalArgumentException e) {
+        } catch (IOException | IllegalArgumentException | InterruptedException e) {
             System.err.println(e.getMessage());
             System.exit(1);
         }
@@ -146,6 +525,8 @@ public class Main {
         System.out.println("usage:");
         System.out.println("  create -p pubkey.der -P privkey.der [-n name] [-m email] -e YYYY-mm-dd [-f application.lic]");
         System.out.println("  validate -p pubkey.der [-f application.lic]");
+        System.out.println("  batch-create -p pubkey.der -P privkey.der -i records.csv -o directory [-t threads]");
+        System.out.println("  batch-validate -p pubkey.der -i directory [-o report.txt] [-v version] [-t threads]");
         System.out.println("");
         System.out.println("  -p, --public     define the public key file in DER format");
         System.out.println("  -P, --private    define the private key file file in DER format");
@@ -153,6 +534,11 @@ public class Main {
         System.out.println("  -m, --mail       email to be stored in the license file (optional)");
         System.out.println("  -e, --expiration expiration date in YYYY-mm-dd format");
         System.out.println("  -f, --file       the license file to be created or validated (default: application.lic)");
+        System.out.println("  -i, --input      CSV or JSON-lines (*.jsonl) file with one license per record, - for stdin");
+        System.out.println("                   or the directory to validate");
+        System.out.println("  -o, --output     directory where to create the license files or the validation report (default: stdout)");
+        System.out.println("  -v, --version    current version used to validate single-version licenses");
+        System.out.println("  -t, --threads    number of threads used (default: number of processors)");
         System.exit(1);
     }
 
@@ -0,0 +1,349 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read license records one at a time from a CSV or JSON-lines stream. Used by the command line to create licenses in
+ * batch without loading the whole input in memory.
+ * <p>
+ * A CSV stream must start with a header line defining the property names. A JSON-lines stream contains one flat JSON
+ * object per line. Empty values are ignored.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+abstract class RecordReader {
+
+    /**
+     * Create a new record reader.
+     * 
+     * @param reader
+     *            the stream to read. It should be buffered.
+     * @param json
+     *            True to read JSON-lines, false to read CSV.
+     */
+    static RecordReader create(Reader reader, boolean json) {
+        if (json) {
+            return new JsonLinesReader(reader);
+        }
+        return new CsvReader(reader);
+    }
+
+    protected final Reader reader;
+
+    /**
+     * The current line number. Used for error reporting.
+     */
+    protected int line = 1;
+
+    /**
+     * One character pushed back.
+     */
+    private int pushBack = -2;
+
+    /**
+     * The last character read and the one before, used to resynchronize after a malformed record.
+     */
+    private int last = -2;
+    private int previous = -2;
+
+    protected RecordReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Return the current line number.
+     */
+    int getLine() {
+        return line;
+    }
+
+    /**
+     * Read the next record.
+     * 
+     * @return the record properties or null at the end of the stream.
+     * @throws IOException
+     *             if the stream can't be read or is malformed.
+     */
+    abstract Map<String, String> next() throws IOException;
+
+    /**
+     * Skip the rest of the current line. Called after a malformed record to resume reading with the next record.
+     * 
+     * @throws IOException
+     *             if the stream can't be read.
+     */
+    void skipLine() throws IOException {
+        int c = last;
+        while (c != '\n' && c != '\r' && c != -1) {
+            c = read();
+        }
+    }
+
+    protected int read() throws IOException {
+        int c;
+        if (pushBack != -2) {
+            c = pushBack;
+            pushBack = -2;
+        } else {
+            c = reader.read();
+        }
+        if (c == '\n') {
+            line++;
+        }
+        previous = last;
+        last = c;
+        return c;
+    }
+
+    protected void unread(int c) {
+        if (c == '\n') {
+            line--;
+        }
+        pushBack = c;
+        last = previous;
+    }
+
+    protected IOException error(String message) {
+        return new IOException("line " + line + ": " + message);
+    }
+
+    /**
+     * Read CSV records as defined by RFC 4180.
+     */
+    private static class CsvReader extends RecordReader {
+
+        private List<String> header;
+
+        CsvReader(Reader reader) {
+            super(reader);
+        }
+
+        @Override
+        Map<String, String> next() throws IOException {
+            if (header == null) {
+                header = readLine();
+                if (header == null) {
+                    return null;
+                }
+            }
+            List<String> values;
+            do {
+                values = readLine();
+                if (values == null) {
+                    return null;
+                }
+                // Skip blank lines.
+            } while (values.size() == 1 && values.get(0).isEmpty());
+            if (values.size() > header.size()) {
+                throw error("too many values");
+            }
+            Map<String, String> record = new LinkedHashMap<String, String>();
+            for (int i = 0; i < values.size(); i++) {
+                if (!values.get(i).isEmpty()) {
+                    record.put(header.get(i), values.get(i));
+                }
+            }
+            return record;
+        }
+
+        /**
+         * Read the fields of a single line.
+         * 
+         * @return the list of fields or null at the end of the stream.
+         */
+        private List<String> readLine() throws IOException {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<String>();
+            StringBuilder buf = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw error("unterminated quoted value");
+                    } else if (c == '"') {
+                        c = read();
+                        if (c != '"') {
+                            quoted = false;
+                            continue;
+                        }
+                    }
+                    buf.append((char) c);
+                } else if (c == '"' && buf.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(buf.toString());
+                    buf.setLength(0);
+                } else if (c == '\r' || c == '\n' || c == -1) {
+                    if (c == '\r') {
+                        c = read();
+                        if (c != '\n') {
+                            unread(c);
+                        }
+                    }
+                    fields.add(buf.toString());
+                    return fields;
+                } else {
+                    buf.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+    }
+
+    /**
+     * Read flat JSON objects, one per line.
+     */
+    private static class JsonLinesReader extends RecordReader {
+
+        JsonLinesReader(Reader reader) {
+            super(reader);
+        }
+
+        @Override
+        Map<String, String> next() throws IOException {
+            int c = skipWhitespace();
+            if (c == -1) {
+                return null;
+            }
+            if (c != '{') {
+                throw error("expecting '{'");
+            }
+            Map<String, String> record = new LinkedHashMap<String, String>();
+            c = skipWhitespace();
+            if (c == '}') {
+                return record;
+            }
+            while (true) {
+                if (c != '"') {
+                    throw error("expecting a property name");
+                }
+                String key = readString();
+                if (skipWhitespace() != ':') {
+                    throw error("expecting ':'");
+                }
+                String value = readValue();
+                if (value != null && !value.isEmpty()) {
+                    record.put(key, value);
+                }
+                c = skipWhitespace();
+                if (c == '}') {
+                    return record;
+                } else if (c != ',') {
+                    throw error("expecting ',' or '}'");
+                }
+                c = skipWhitespace();
+            }
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (c == ' ' || c == '\t' || c == '\r' || c == '\n');
+            return c;
+        }
+
+        /**
+         * Read a string, number, boolean or null value.
+         */
+        private String readValue() throws IOException {
+            int c = skipWhitespace();
+            if (c == '"') {
+                return readString();
+            } else if (c == '{' || c == '[') {
+                throw error("nested values are not supported");
+            }
+            StringBuilder buf = new StringBuilder();
+            while (c != -1 && c != ',' && c != '}' && c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                buf.append((char) c);
+                c = read();
+            }
+            unread(c);
+            String value = buf.toString();
+            if (value.isEmpty()) {
+                throw error("expecting a value");
+            }
+            return "null".equals(value) ? null : value;
+        }
+
+        /**
+         * Read a string value. The opening quote is already consumed.
+         */
+        private String readString() throws IOException {
+            StringBuilder buf = new StringBuilder();
+            int c;
+            while ((c = read()) != '"') {
+                if (c == -1 || c == '\n') {
+                    throw error("unterminated string");
+                } else if (c == '\\') {
+                    c = read();
+                    switch (c) {
+                    case 'b':
+                        buf.append('\b');
+                        break;
+                    case 'f':
+                        buf.append('\f');
+                        break;
+                    case 'n':
+                        buf.append('\n');
+                        break;
+                    case 'r':
+                        buf.append('\r');
+                        break;
+                    case 't':
+                        buf.append('\t');
+                        break;
+                    case 'u':
+                        int value = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                throw error("invalid unicode escape");
+                            }
+                            value = (value << 4) | digit;
+                        }
+                        buf.append((char) value);
+                        break;
+                    case '"':
+                    case '\\':
+                    case '/':
+                        buf.append((char) c);
+                        break;
+                    default:
+                        throw error("invalid escape sequence");
+                    }
+                } else {
+                    buf.append((char) c);
+                }
+            }
+            return buf.toString();
+        }
+
+    }
+
+}
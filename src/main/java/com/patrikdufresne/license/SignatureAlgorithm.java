@@ -0,0 +1,198 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.PSSParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+
+/**
+ * The algorithms available to sign the licenses. The algorithm used to sign a license is recorded in the
+ * {@link License#SIGNATURE_ALGORITHM} property, which is part of the signed data. The property is omitted for
+ * {@link #SHA1_WITH_RSA} so the licenses remain readable by previous versions.
+ * <p>
+ * Each algorithm requires a provider supporting it: RSASSA-PSS requires Java 11 and Ed25519 requires Java 15 unless
+ * another provider is installed.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public enum SignatureAlgorithm {
+
+    /**
+     * RSA PKCS#1 v1.5 with SHA-1. The original algorithm, default for RSA keys.
+     */
+    SHA1_WITH_RSA("SHA1withRSA", "RSA"),
+
+    /**
+     * RSA PSS with SHA-256, MGF1 with SHA-256 and a 32 bytes salt. Require an RSA key.
+     */
+    RSASSA_PSS("RSASSA-PSS", "RSA"),
+
+    /**
+     * ECDSA with SHA-256. Default for EC keys, e.g. P-256.
+     */
+    SHA256_WITH_ECDSA("SHA256withECDSA", "EC"),
+
+    /**
+     * EdDSA with the Ed25519 curve. Default for Ed25519 keys.
+     */
+    ED25519("Ed25519", "EdDSA");
+
+    /**
+     * Key algorithms tried in order to decode the keys.
+     */
+    private static final String[] KEY_ALGORITHMS = { "RSA", "EC", "Ed25519" };
+
+    /**
+     * Return the algorithm with the given name.
+     * 
+     * @param name
+     *            the algorithm name as recorded in the license or null.
+     * @return the algorithm, {@link #SHA1_WITH_RSA} if the name is null or null if the name is unknown.
+     */
+    public static SignatureAlgorithm fromName(String name) {
+        if (name == null) {
+            return SHA1_WITH_RSA;
+        }
+        for (SignatureAlgorithm algorithm : values()) {
+            if (algorithm.name.equals(name)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the default algorithm for the given key.
+     * 
+     * @param key
+     *            the public or private key.
+     * @return the algorithm or null if the key type is not supported.
+     */
+    public static SignatureAlgorithm forKey(Key key) {
+        for (SignatureAlgorithm algorithm : values()) {
+            if (algorithm.supports(key)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decode a public key of any of the supported types.
+     * 
+     * @param encoded
+     *            the public key in DER format.
+     * @return the public key
+     * @throws GeneralSecurityException
+     *             if the key is invalid or the key type is not supported.
+     */
+    static PublicKey decodePublicKey(byte[] encoded) throws GeneralSecurityException {
+        X509EncodedKeySpec spec = new X509EncodedKeySpec(encoded);
+        for (String keyAlgorithm : KEY_ALGORITHMS) {
+            try {
+                return KeyFactory.getInstance(keyAlgorithm).generatePublic(spec);
+            } catch (NoSuchAlgorithmException e) {
+                // Key type not available in this platform.
+            } catch (InvalidKeySpecException e) {
+                // Try next key type.
+            }
+        }
+        throw new InvalidKeySpecException("unsupported public key");
+    }
+
+    /**
+     * Decode a private key of any of the supported types.
+     * 
+     * @param encoded
+     *            the private key in PKCS#8 format.
+     * @return the private key
+     * @throws GeneralSecurityException
+     *             if the key is invalid or the key type is not supported.
+     */
+    static PrivateKey decodePrivateKey(byte[] encoded) throws GeneralSecurityException {
+        PKCS8EncodedKeySpec spec = new PKCS8EncodedKeySpec(encoded);
+        for (String keyAlgorithm : KEY_ALGORITHMS) {
+            try {
+                return KeyFactory.getInstance(keyAlgorithm).generatePrivate(spec);
+            } catch (NoSuchAlgorithmException e) {
+                // Key type not available in this platform.
+            } catch (InvalidKeySpecException e) {
+                // Try next key type.
+            }
+        }
+        throw new InvalidKeySpecException("unsupported private key");
+    }
+
+    private final String name;
+
+    private final String keyAlgorithm;
+
+    private SignatureAlgorithm(String name, String keyAlgorithm) {
+        this.name = name;
+        this.keyAlgorithm = keyAlgorithm;
+    }
+
+    /**
+     * Return the name of the algorithm as recorded in the license.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Check if the algorithm may be used with the given key.
+     * 
+     * @param key
+     *            the public or private key.
+     * @return True if the key type matches.
+     */
+    public boolean supports(Key key) {
+        // Key types of RSA-PSS and Ed25519 may be named after the signature algorithm.
+        String algorithm = key.getAlgorithm();
+        return this.keyAlgorithm.equals(algorithm) || this.name.equals(algorithm);
+    }
+
+    /**
+     * Create a new signature object for this algorithm. The object must be initialized with a key.
+     * 
+     * @throws NoSuchAlgorithmException
+     *             if the algorithm is not supported by the platform.
+     */
+    Signature newSignature() throws NoSuchAlgorithmException {
+        Signature signature = Signature.getInstance(this.name);
+        if (this == RSASSA_PSS) {
+            try {
+                signature.setParameter(new PSSParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, 32, 1));
+            } catch (InvalidAlgorithmParameterException e) {
+                throw new NoSuchAlgorithmException("PSS parameters not supported", e);
+            }
+        }
+        return signature;
+    }
+
+}
@@ -0,0 +1,529 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.security.SignatureException;
+
+/**
+ * Read and write the text form of a license file: a property file encoded in UTF-8. This class replaces
+ * {@link java.util.Properties}: the bytes are parsed in a single pass straight into the {@link License} and the
+ * signature is decoded without creating an intermediate string. The syntax accepted is the one of
+ * {@link java.util.Properties#load(java.io.Reader)}, including comments, escapes, the different separators and the
+ * line continuations, so the files written by previous versions can still be read.
+ * <p>
+ * The files are written with the keys sorted and without timestamp, so the same license signed with the same key
+ * always produces the same file.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+final class TextCodec {
+
+    /**
+     * Property to store the signature.
+     */
+    static final String SIGNATURE = "signature";
+
+    /**
+     * Comment written at the beginning of the file.
+     */
+    private static final byte[] HEADER = { '#', 'L', 'i', 'c', 'e', 'n', 's', 'e', ' ', 'f', 'i', 'l', 'e', '\n' };
+
+    private static final byte[] SIGNATURE_KEY = { 's', 'i', 'g', 'n', 'a', 't', 'u', 'r', 'e', '=' };
+
+    private static final char[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
+
+    /**
+     * Character used to replace malformed UTF-8 sequences, same as the decoder.
+     */
+    private static final char REPLACEMENT = '\uFFFD';
+
+    /**
+     * Returned by {@link #readEscape()} when the line continues on the next line.
+     */
+    private static final int CONTINUATION = -2;
+
+    private static final int END_OF_LINE = 0;
+
+    private static final int SEPARATOR = 1;
+
+    private static final int WHITESPACE = 2;
+
+    private static final int INITIAL_SIZE = 1024;
+
+    /**
+     * Larger buffers are not kept by the thread after use.
+     */
+    private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<TextCodec> INSTANCE = new ThreadLocal<TextCodec>() {
+        @Override
+        protected TextCodec initialValue() {
+            return new TextCodec();
+        }
+    };
+
+    /**
+     * Parse the license file from the buffer position to its limit. The buffer position is moved to its limit.
+     * 
+     * @param in
+     *            the content of the license file.
+     * @return the license and its signature.
+     * @throws IOException
+     *             if the file contains a malformed escape sequence.
+     * @throws SignatureException
+     *             if the signature is not valid Base64.
+     */
+    static SignedLicense read(ByteBuffer in) throws IOException, SignatureException {
+        TextCodec codec = INSTANCE.get();
+        codec.in = in;
+        codec.pos = in.position();
+        codec.limit = in.limit();
+        codec.pending = -1;
+        try {
+            return codec.parse();
+        } finally {
+            codec.in = null;
+            if (codec.chars.length > MAX_RETAINED_SIZE) {
+                codec.chars = new char[INITIAL_SIZE];
+            }
+            in.position(in.limit());
+        }
+    }
+
+    /**
+     * Write the license file into the stream.
+     * 
+     * @param out
+     *            the output stream.
+     * @param license
+     *            the license.
+     * @param signature
+     *            the raw signature.
+     */
+    static void write(OutputStream out, License license, byte[] signature) throws IOException {
+        TextCodec codec = INSTANCE.get();
+        codec.count = 0;
+        try {
+            codec.write(license, signature);
+            out.write(codec.bytes, 0, codec.count);
+        } finally {
+            if (codec.bytes.length > MAX_RETAINED_SIZE) {
+                codec.bytes = new byte[INITIAL_SIZE];
+            }
+        }
+    }
+
+    /**
+     * Decoded characters of the current line: the key followed by the value.
+     */
+    private char[] chars = new char[INITIAL_SIZE];
+
+    private int length;
+
+    private ByteBuffer in;
+
+    private int pos;
+
+    private int limit;
+
+    /**
+     * Low surrogate to be returned by the next call to {@link #read()} or -1.
+     */
+    private int pending;
+
+    /**
+     * Encoded bytes of the file being written.
+     */
+    private byte[] bytes = new byte[INITIAL_SIZE];
+
+    private int count;
+
+    private TextCodec() {
+        // Use static methods.
+    }
+
+    private SignedLicense parse() throws IOException, SignatureException {
+        License license = new License();
+        byte[] signature = null;
+        while (skipBlank()) {
+            byte b = in.get(pos);
+            if (b == '#' || b == '!') {
+                skipLine();
+                continue;
+            }
+            length = 0;
+            int end = readKey();
+            int keyLength = length;
+            if (end != END_OF_LINE) {
+                skipSeparator(end == SEPARATOR);
+                readValue();
+            }
+            if (isSignature(keyLength)) {
+                try {
+                    signature = Base64.decode(CharBuffer.wrap(chars, keyLength, length - keyLength));
+                } catch (IllegalArgumentException e) {
+                    throw new SignatureException("invalid Base64 signature", e);
+                }
+            } else {
+                license.setProperty(new String(chars, 0, keyLength), new String(chars, keyLength, length - keyLength));
+            }
+        }
+        return new SignedLicense(license, signature);
+    }
+
+    /**
+     * Skip white spaces and empty lines.
+     * 
+     * @return false when the end of the data is reached.
+     */
+    private boolean skipBlank() {
+        while (pos < limit) {
+            byte b = in.get(pos);
+            if (b != ' ' && b != '\t' && b != '\f' && b != '\n' && b != '\r') {
+                return true;
+            }
+            pos++;
+        }
+        return false;
+    }
+
+    private void skipLine() {
+        while (pos < limit) {
+            byte b = in.get(pos);
+            if (b == '\n' || b == '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < limit) {
+            byte b = in.get(pos);
+            if (b != ' ' && b != '\t' && b != '\f') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Read the key up to the first separator or white space not escaped.
+     * 
+     * @return how the key ended.
+     */
+    private int readKey() throws IOException {
+        for (;;) {
+            int c = read();
+            switch (c) {
+            case -1:
+            case '\n':
+            case '\r':
+                return END_OF_LINE;
+            case '=':
+            case ':':
+                return SEPARATOR;
+            case ' ':
+            case '\t':
+            case '\f':
+                return WHITESPACE;
+            case '\\':
+                c = readEscape();
+                if (c == CONTINUATION) {
+                    continue;
+                } else if (c == -1) {
+                    return END_OF_LINE;
+                }
+                break;
+            default:
+                break;
+            }
+            append(c);
+        }
+    }
+
+    /**
+     * Skip the white spaces around the separator between the key and the value.
+     */
+    private void skipSeparator(boolean separator) throws IOException {
+        while (pos < limit) {
+            byte b = in.get(pos);
+            if (b == ' ' || b == '\t' || b == '\f') {
+                pos++;
+            } else if (!separator && (b == '=' || b == ':')) {
+                separator = true;
+                pos++;
+            } else if (b == '\\' && pos + 1 < limit && (in.get(pos + 1) == '\n' || in.get(pos + 1) == '\r')) {
+                pos++;
+                readEscape();
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void readValue() throws IOException {
+        for (;;) {
+            int c = read();
+            if (c == -1 || c == '\n' || c == '\r') {
+                return;
+            } else if (c == '\\') {
+                c = readEscape();
+                if (c == CONTINUATION) {
+                    continue;
+                } else if (c == -1) {
+                    return;
+                }
+            }
+            append(c);
+        }
+    }
+
+    /**
+     * Read the character following a backslash.
+     * 
+     * @return the unescaped character, {@link #CONTINUATION} if the line continues or -1 at the end of data.
+     */
+    private int readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+        case '\r':
+            if (pos < limit && in.get(pos) == '\n') {
+                pos++;
+            }
+            // Fall through
+        case '\n':
+            skipWhitespace();
+            return CONTINUATION;
+        case 't':
+            return '\t';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 'f':
+            return '\f';
+        case 'u':
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(read(), 16);
+                if (digit < 0) {
+                    throw new IOException("malformed \\uxxxx encoding");
+                }
+                value = (value << 4) | digit;
+            }
+            return value;
+        default:
+            return c;
+        }
+    }
+
+    /**
+     * Read the next UTF-16 character.
+     * 
+     * @return the character or -1 at the end of data.
+     */
+    private int read() {
+        if (pending >= 0) {
+            int c = pending;
+            pending = -1;
+            return c;
+        }
+        if (pos >= limit) {
+            return -1;
+        }
+        int b = in.get(pos++);
+        if (b >= 0) {
+            return b;
+        }
+        return decode(b & 0xff);
+    }
+
+    /**
+     * Decode a multi-byte UTF-8 sequence.
+     */
+    private int decode(int b) {
+        int n;
+        int cp;
+        if (b >= 0xc2 && b <= 0xdf) {
+            n = 1;
+            cp = b & 0x1f;
+        } else if (b >= 0xe0 && b <= 0xef) {
+            n = 2;
+            cp = b & 0x0f;
+        } else if (b >= 0xf0 && b <= 0xf4) {
+            n = 3;
+            cp = b & 0x07;
+        } else {
+            return REPLACEMENT;
+        }
+        for (int i = 0; i < n; i++) {
+            if (pos >= limit) {
+                return REPLACEMENT;
+            }
+            int c = in.get(pos);
+            if ((c & 0xc0) != 0x80) {
+                return REPLACEMENT;
+            }
+            cp = (cp << 6) | (c & 0x3f);
+            pos++;
+        }
+        if ((n == 2 && (cp < 0x800 || (cp >= 0xd800 && cp <= 0xdfff))) || (n == 3 && (cp < 0x10000 || cp > 0x10ffff))) {
+            return REPLACEMENT;
+        }
+        if (cp >= 0x10000) {
+            pending = Character.lowSurrogate(cp);
+            return Character.highSurrogate(cp);
+        }
+        return cp;
+    }
+
+    private void append(int c) {
+        if (length == chars.length) {
+            char[] newChars = new char[chars.length * 2];
+            System.arraycopy(chars, 0, newChars, 0, length);
+            chars = newChars;
+        }
+        chars[length++] = (char) c;
+    }
+
+    private boolean isSignature(int keyLength) {
+        if (keyLength != SIGNATURE.length()) {
+            return false;
+        }
+        for (int i = 0; i < keyLength; i++) {
+            if (chars[i] != SIGNATURE.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write(License license, byte[] signature) {
+        put(HEADER);
+        for (String key : license.getSortedKeys()) {
+            writeEscaped(key, true);
+            put('=');
+            writeEscaped(license.getProperty(key), false);
+            put('\n');
+        }
+        if (signature != null) {
+            put(SIGNATURE_KEY);
+            ensureCapacity(Base64.encodedLength(signature.length) + 1);
+            count += Base64.encode(signature, 0, signature.length, bytes, count);
+            put('\n');
+        }
+    }
+
+    /**
+     * Write the string in UTF-8, escaping the characters the same way as {@link java.util.Properties}. The control
+     * characters and the unpaired surrogates are written as unicode escapes.
+     */
+    private void writeEscaped(String value, boolean key) {
+        int len = value.length();
+        ensureCapacity(len * 6);
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case ' ':
+                if (i == 0 || key) {
+                    bytes[count++] = '\\';
+                }
+                bytes[count++] = ' ';
+                break;
+            case '\t':
+                escape('t');
+                break;
+            case '\n':
+                escape('n');
+                break;
+            case '\r':
+                escape('r');
+                break;
+            case '\f':
+                escape('f');
+                break;
+            case '=':
+            case ':':
+            case '#':
+            case '!':
+            case '\\':
+                escape(c);
+                break;
+            default:
+                if (c < 0x20 || c == 0x7f) {
+                    unicodeEscape(c);
+                } else if (c < 0x80) {
+                    bytes[count++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[count++] = (byte) (0xc0 | (c >> 6));
+                    bytes[count++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, value.charAt(++i));
+                    bytes[count++] = (byte) (0xf0 | (cp >> 18));
+                    bytes[count++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    bytes[count++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    bytes[count++] = (byte) (0x80 | (cp & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    unicodeEscape(c);
+                } else {
+                    bytes[count++] = (byte) (0xe0 | (c >> 12));
+                    bytes[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    bytes[count++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+        }
+    }
+
+    private void escape(char c) {
+        bytes[count++] = '\\';
+        bytes[count++] = (byte) c;
+    }
+
+    private void unicodeEscape(char c) {
+        bytes[count++] = '\\';
+        bytes[count++] = 'u';
+        bytes[count++] = (byte) HEX[(c >> 12) & 0xf];
+        bytes[count++] = (byte) HEX[(c >> 8) & 0xf];
+        bytes[count++] = (byte) HEX[(c >> 4) & 0xf];
+        bytes[count++] = (byte) HEX[c & 0xf];
+    }
+
+    private void put(byte[] b) {
+        ensureCapacity(b.length);
+        System.arraycopy(b, 0, bytes, count, b.length);
+        count += b.length;
+    }
+
+    private void put(char c) {
+        ensureCapacity(1);
+        bytes[count++] = (byte) c;
+    }
+
+    private void ensureCapacity(int n) {
+        if (count + n > bytes.length) {
+            byte[] newBytes = new byte[Math.max(bytes.length * 2, count + n)];
+            System.arraycopy(bytes, 0, newBytes, 0, count);
+            bytes = newBytes;
+        }
+    }
+
+}
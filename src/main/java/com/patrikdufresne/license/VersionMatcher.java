@@ -0,0 +1,261 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled version constraint used to validate single version licenses. Two syntaxes are supported:
+ * <ul>
+ * <li>a version range made of one or more space separated constraints that must all be satisfied. Each constraint is
+ * either a version prefixed by an operator (<code>&gt;=2.0 &lt;3.0</code>, <code>=1.2</code>) or a version with a
+ * wildcard (<code>2.x</code>, <code>2.1.x</code>).</li>
+ * <li>otherwise, a regular expression that must match the whole version (<code>2\.0\..*</code>).</li>
+ * </ul>
+ * A version is compared numerically, component by component. Any suffix following the numeric components is ignored
+ * (<code>2.0-beta</code> is equivalent to <code>2.0</code>). Missing components are equal to zero.
+ * <p>
+ * Instances are immutable and thread-safe. Matching a version range doesn't allocate any object.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public abstract class VersionMatcher {
+
+    /**
+     * Pattern of a single constraint of a version range.
+     */
+    private static final Pattern CONSTRAINT = Pattern.compile("(>=|<=|>|<|=)?\\d+(\\.\\d+)*(\\.[xX])?|[xX]");
+
+    /**
+     * Compile the given version constraint.
+     * 
+     * @param spec
+     *            the version range or regular expression.
+     * @return the compiled constraint.
+     * @throws java.util.regex.PatternSyntaxException
+     *             if the spec is not a version range nor a valid regular expression.
+     */
+    public static VersionMatcher compile(String spec) {
+        if (spec == null) {
+            throw new NullPointerException("spec");
+        }
+        String[] tokens = spec.trim().split("\\s+");
+        boolean range = tokens.length > 0 && !tokens[0].isEmpty();
+        boolean operator = false;
+        for (int i = 0; range && i < tokens.length; i++) {
+            range = CONSTRAINT.matcher(tokens[i]).matches();
+            operator |= !Character.isDigit(tokens[i].charAt(0)) || tokens[i].endsWith("x") || tokens[i].endsWith("X");
+        }
+        // A plain version without operator or wildcard (e.g.: 2.0) is a
+        // regular expression for backward compatibility.
+        if (range && operator) {
+            return new Range(tokens);
+        }
+        return new Regex(Pattern.compile(spec));
+    }
+
+    /**
+     * Check if the given version satisfies this constraint.
+     * 
+     * @param version
+     *            the current version
+     * @return True if the version matches. False if the version doesn't match or is null.
+     */
+    public abstract boolean matches(CharSequence version);
+
+    /**
+     * Regular expression matching the whole version.
+     */
+    private static final class Regex extends VersionMatcher {
+
+        private final Pattern pattern;
+
+        Regex(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean matches(CharSequence version) {
+            return version != null && pattern.matcher(version).matches();
+        }
+
+        @Override
+        public String toString() {
+            return pattern.pattern();
+        }
+
+    }
+
+    /**
+     * Conjunction of numeric comparisons.
+     */
+    private static final class Range extends VersionMatcher {
+
+        private static final int EQ = 0;
+        private static final int GT = 1;
+        private static final int GE = 2;
+        private static final int LT = 3;
+        private static final int LE = 4;
+
+        /**
+         * Operator of each comparison.
+         */
+        private final int[] operators;
+
+        /**
+         * Version components of each comparison.
+         */
+        private final int[][] versions;
+
+        private final String spec;
+
+        Range(String[] tokens) {
+            List<Integer> operators = new ArrayList<Integer>();
+            List<int[]> versions = new ArrayList<int[]>();
+            for (String token : tokens) {
+                if (token.equalsIgnoreCase("x")) {
+                    // Match any version.
+                    continue;
+                }
+                int op = EQ;
+                int start = 0;
+                if (token.startsWith(">=")) {
+                    op = GE;
+                    start = 2;
+                } else if (token.startsWith("<=")) {
+                    op = LE;
+                    start = 2;
+                } else if (token.startsWith(">")) {
+                    op = GT;
+                    start = 1;
+                } else if (token.startsWith("<")) {
+                    op = LT;
+                    start = 1;
+                } else if (token.startsWith("=")) {
+                    start = 1;
+                }
+                String[] parts = token.substring(start).split("\\.");
+                boolean wildcard = parts[parts.length - 1].equalsIgnoreCase("x");
+                int[] version = new int[wildcard ? parts.length - 1 : parts.length];
+                for (int i = 0; i < version.length; i++) {
+                    version[i] = Integer.parseInt(parts[i]);
+                }
+                if (wildcard && op == EQ) {
+                    // 2.1.x is equivalent to >=2.1 <2.2
+                    int[] upper = version.clone();
+                    upper[upper.length - 1]++;
+                    operators.add(GE);
+                    versions.add(version);
+                    operators.add(LT);
+                    versions.add(upper);
+                } else {
+                    operators.add(op);
+                    versions.add(version);
+                }
+            }
+            this.operators = new int[operators.size()];
+            this.versions = new int[operators.size()][];
+            for (int i = 0; i < this.operators.length; i++) {
+                this.operators[i] = operators.get(i).intValue();
+                this.versions[i] = versions.get(i);
+            }
+            this.spec = join(tokens);
+        }
+
+        private static String join(String[] tokens) {
+            StringBuilder buf = new StringBuilder();
+            for (String token : tokens) {
+                if (buf.length() > 0) {
+                    buf.append(' ');
+                }
+                buf.append(token);
+            }
+            return buf.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence version) {
+            if (version == null || version.length() == 0 || !Character.isDigit(version.charAt(0))) {
+                return false;
+            }
+            for (int i = 0; i < operators.length; i++) {
+                int cmp = compare(version, versions[i]);
+                boolean match;
+                switch (operators[i]) {
+                case GT:
+                    match = cmp > 0;
+                    break;
+                case GE:
+                    match = cmp >= 0;
+                    break;
+                case LT:
+                    match = cmp < 0;
+                    break;
+                case LE:
+                    match = cmp <= 0;
+                    break;
+                default:
+                    match = cmp == 0;
+                }
+                if (!match) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Compare the numeric components of the version with the given components without creating any object.
+         * 
+         * @return a negative value, zero or a positive value if the version is lower, equal or greater.
+         */
+        private static int compare(CharSequence version, int[] components) {
+            int pos = 0;
+            int len = version.length();
+            for (int i = 0; i < components.length || pos < len; i++) {
+                // Parse the next component. Zero if missing.
+                long value = 0;
+                boolean digit = false;
+                while (pos < len && Character.isDigit(version.charAt(pos))) {
+                    value = Math.min(value * 10 + (version.charAt(pos) - '0'), Integer.MAX_VALUE);
+                    pos++;
+                    digit = true;
+                }
+                if (pos < len && (!digit || version.charAt(pos) != '.')) {
+                    // Ignore suffix.
+                    pos = len;
+                } else {
+                    pos++;
+                }
+                long expected = i < components.length ? components[i] : 0;
+                if (value != expected) {
+                    return value < expected ? -1 : 1;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return spec;
+        }
+
+    }
+
+}
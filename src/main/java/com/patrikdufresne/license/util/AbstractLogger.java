@@ -0,0 +1,90 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license.util;
+
+/**
+ * Base implementation of {@link ILogger} formatting the message templates
+ * only when the level is enabled.
+ * <p>
+ * Subclasses implement {@link #isEnabled(String)} and the logging of the
+ * formatted messages and exceptions.
+ * </p>
+ * 
+ */
+public abstract class AbstractLogger implements ILogger {
+
+    private static final String PLACEHOLDER = "{}";
+
+    /**
+     * Returns the severity of the given level, from 0 for trace to 4 for
+     * error. Unknown levels are considered as errors.
+     * 
+     * @param level
+     *            The level
+     * @return the severity
+     */
+    protected static int severity(String level) {
+        if (TRACE.equals(level)) {
+            return 0;
+        } else if (DEBUG.equals(level)) {
+            return 1;
+        } else if (INFO.equals(level)) {
+            return 2;
+        } else if (WARN.equals(level)) {
+            return 3;
+        }
+        return 4;
+    }
+
+    /**
+     * Replaces each <code>{}</code> of the template by the next argument.
+     * Extra placeholders are left as is.
+     * 
+     * @param format
+     *            The message template.
+     * @param args
+     *            The arguments.
+     * @return the formatted message.
+     */
+    protected static String format(String format, Object... args) {
+        StringBuilder buf = new StringBuilder(format.length() + 16 * args.length);
+        int start = 0;
+        for (Object arg : args) {
+            int index = format.indexOf(PLACEHOLDER, start);
+            if (index < 0) {
+                break;
+            }
+            buf.append(format, start, index).append(arg);
+            start = index + PLACEHOLDER.length();
+        }
+        return buf.append(format, start, format.length()).toString();
+    }
+
+    @Override
+    public void log(String level, String format, Object arg) {
+        if (isEnabled(level)) {
+            log(level, format(format, arg));
+        }
+    }
+
+    @Override
+    public void log(String level, String format, Object arg1, Object arg2) {
+        if (isEnabled(level)) {
+            log(level, format(format, arg1, arg2));
+        }
+    }
+
+}
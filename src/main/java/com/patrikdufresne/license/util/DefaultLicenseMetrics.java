@@ -0,0 +1,160 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free implementation of {@link LicenseMetrics} keeping, for each stage, a counter per outcome, the total
+ * duration and a histogram of the durations.
+ * <p>
+ * The histogram has one bucket per power of two nanoseconds: bucket <i>n</i> counts the durations from
+ * 2<sup><i>n</i>-1</sup> to 2<sup><i>n</i></sup>-1 nanoseconds. The percentiles are therefore approximated by the
+ * upper bound of the bucket, within a factor two.
+ * </p>
+ * 
+ */
+public class DefaultLicenseMetrics implements LicenseMetrics {
+
+    /**
+     * Number of buckets of the histograms.
+     */
+    public static final int BUCKETS = 64;
+
+    private static final int STAGES = Stage.values().length;
+
+    private static final int OUTCOMES = Outcome.values().length;
+
+    /**
+     * Number of records indexed by stage and outcome.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(STAGES * OUTCOMES);
+
+    /**
+     * Total duration in nanoseconds indexed by stage.
+     */
+    private final AtomicLongArray totalTimes = new AtomicLongArray(STAGES);
+
+    /**
+     * Histograms of the durations indexed by stage and bucket.
+     */
+    private final AtomicLongArray histograms = new AtomicLongArray(STAGES * BUCKETS);
+
+    /**
+     * Return the bucket of the given duration.
+     */
+    static int bucket(long nanos) {
+        return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    @Override
+    public void record(Stage stage, Outcome outcome, long nanos) {
+        int s = stage.ordinal();
+        counts.incrementAndGet(s * OUTCOMES + outcome.ordinal());
+        totalTimes.addAndGet(s, nanos);
+        histograms.incrementAndGet(s * BUCKETS + bucket(nanos));
+    }
+
+    /**
+     * Returns the number of records of the stage with the given outcome.
+     */
+    public long getCount(Stage stage, Outcome outcome) {
+        return counts.get(stage.ordinal() * OUTCOMES + outcome.ordinal());
+    }
+
+    /**
+     * Returns the number of records of the stage for all the outcomes.
+     */
+    public long getCount(Stage stage) {
+        long count = 0;
+        for (Outcome outcome : Outcome.values()) {
+            count += getCount(stage, outcome);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the total duration of the stage.
+     * 
+     * @param stage
+     *            the stage.
+     * @param unit
+     *            the unit of the returned duration.
+     */
+    public long getTotalTime(Stage stage, TimeUnit unit) {
+        return unit.convert(totalTimes.get(stage.ordinal()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns a copy of the histogram of the durations of the stage.
+     * 
+     * @return the number of records in each bucket.
+     * @see #BUCKETS
+     */
+    public long[] getHistogram(Stage stage) {
+        long[] histogram = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = histograms.get(stage.ordinal() * BUCKETS + i);
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns an approximation of the given percentile of the durations of the stage.
+     * 
+     * @param stage
+     *            the stage.
+     * @param percentile
+     *            the percentile between 0 and 100. e.g.: 99.
+     * @return the upper bound of the bucket containing the percentile in nanoseconds or 0 if nothing was recorded.
+     */
+    public long getPercentile(Stage stage, double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile");
+        }
+        long[] histogram = getHistogram(stage);
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += histogram[i];
+            if (count > 0 && count >= rank) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Reset all the counters. The records made concurrently may be partially reset.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        for (int i = 0; i < totalTimes.length(); i++) {
+            totalTimes.set(i, 0);
+        }
+        for (int i = 0; i < histograms.length(); i++) {
+            histograms.set(i, 0);
+        }
+    }
+
+}
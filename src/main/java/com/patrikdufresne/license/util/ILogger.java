@@ -19,7 +19,13 @@ package com.patrikdufresne.license.util;
  * A mechanism to log errors throughout the license framework.
  * <p>
  * Clients may provide their own implementation to change how errors are logged
- * from within the license framework.
+ * from within the license framework. Implementations should extend
+ * {@link AbstractLogger} which formats the message templates.
+ * </p>
+ * <p>
+ * The message templates are only formatted when the level is enabled, so the
+ * framework may log from the hot path without allocating when the level is
+ * disabled.
  * </p>
  * 
  */
@@ -63,4 +69,41 @@ public interface ILogger {
      */
     public void log(String level, Throwable exception);
 
+    /**
+     * Checks if the given level is enabled.
+     * 
+     * @param level
+     *            The level
+     * @return True if the messages of this level are logged.
+     */
+    public boolean isEnabled(String level);
+
+    /**
+     * Logs the given message template if the level is enabled. The first
+     * <code>{}</code> of the template is replaced by the argument.
+     * 
+     * @param level
+     *            The level
+     * @param format
+     *            The message template.
+     * @param arg
+     *            The argument.
+     */
+    public void log(String level, String format, Object arg);
+
+    /**
+     * Logs the given message template if the level is enabled. Each
+     * <code>{}</code> of the template is replaced by the next argument.
+     * 
+     * @param level
+     *            The level
+     * @param format
+     *            The message template.
+     * @param arg1
+     *            The first argument.
+     * @param arg2
+     *            The second argument.
+     */
+    public void log(String level, String format, Object arg1, Object arg2);
+
 }
@@ -0,0 +1,90 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license.util;
+
+/**
+ * A listener notified of the duration and the outcome of each stage of the license operations: parsing a license
+ * file, computing the canonical form, verifying and signing the signature and validating the license.
+ * <p>
+ * Clients may register their own implementation with {@link Policy#setMetrics(LicenseMetrics)} to publish the
+ * measures in their monitoring system, or use {@link DefaultLicenseMetrics}. Implementations must be thread-safe and
+ * fast since they are called from the hot path. When no listener is registered, the time is not even measured.
+ * </p>
+ * 
+ */
+public interface LicenseMetrics {
+
+    /**
+     * Stages of the license operations.
+     */
+    public enum Stage {
+        /**
+         * Parsing of a license file, text or binary.
+         */
+        PARSE,
+        /**
+         * Computation of the canonical form of the license to be signed or verified.
+         */
+        CANONICALIZE,
+        /**
+         * Verification of the license signature, excluding the canonical form.
+         */
+        VERIFY,
+        /**
+         * Signature of the license, excluding the canonical form.
+         */
+        SIGN,
+        /**
+         * Validation of the license expiration and version.
+         */
+        VALIDATE
+    }
+
+    /**
+     * Outcomes of a stage.
+     */
+    public enum Outcome {
+        /**
+         * The stage completed successfully.
+         */
+        SUCCESS,
+        /**
+         * The license is invalid: malformed, not signed or the signature doesn't match.
+         */
+        INVALID,
+        /**
+         * The license is expired or doesn't cover the current version.
+         */
+        EXPIRED,
+        /**
+         * The stage failed with an unexpected error. e.g.: I/O error or invalid key.
+         */
+        ERROR
+    }
+
+    /**
+     * Records the duration and the outcome of a stage.
+     * 
+     * @param stage
+     *            the stage.
+     * @param outcome
+     *            the outcome of the stage.
+     * @param nanos
+     *            the duration in nanoseconds.
+     */
+    public void record(Stage stage, Outcome outcome, long nanos);
+
+}
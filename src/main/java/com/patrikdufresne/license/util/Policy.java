@@ -22,42 +22,55 @@ package com.patrikdufresne.license.util;
  */
 public class Policy {
 
-    private static ILogger log;
-
     /**
-     * Returns the dummy log to use if none has been set
+     * Holder of the default logger, created on first use.
      */
-    private static ILogger getDummyLog() {
-        return new ILogger() {
+    private static final class DummyLogHolder {
+
+        static final ILogger INSTANCE = new AbstractLogger() {
+            @Override
+            public boolean isEnabled(String level) {
+                return severity(level) >= severity(INFO);
+            }
+
             @Override
             public void log(String level, String message) {
-                System.out.print(level + " " + message);
+                if (isEnabled(level)) {
+                    System.err.println(level + " " + message);
+                }
             }
 
             @Override
             public void log(String level, Throwable exception) {
-                exception.printStackTrace(System.out);
+                if (isEnabled(level)) {
+                    exception.printStackTrace(System.err);
+                }
             }
         };
+
     }
 
+    private static volatile ILogger log;
+
+    private static volatile LicenseMetrics metrics;
+
     /**
      * Returns the logger used by the license framework to log errors.
      * <p>
-     * The default logger prints the status to <code>System.err</code>.
+     * The default logger prints the status of level info and above to
+     * <code>System.err</code>.
      * </p>
      * 
      * @return the logger
      */
     public static ILogger getLog() {
-        if (log == null) {
-            log = getDummyLog();
-        }
-        return log;
+        ILogger logger = log;
+        return logger != null ? logger : DummyLogHolder.INSTANCE;
     }
 
     /**
-     * Sets the logger used by the license framework to log errors.
+     * Sets the logger used by the license framework to log errors. May be
+     * called from any thread.
      * 
      * @param logger
      *            the logger to use, or <code>null</code> to use the default
@@ -67,4 +80,25 @@ public class Policy {
         log = logger;
     }
 
+    /**
+     * Returns the listener notified of the duration of the license operations.
+     * 
+     * @return the listener or <code>null</code> if none is registered.
+     */
+    public static LicenseMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the listener notified of the duration of the license operations. By default, no listener is registered and
+     * the operations are not measured.
+     * 
+     * @param listener
+     *            the listener to use, or <code>null</code> to disable the metrics.
+     * @see DefaultLicenseMetrics
+     */
+    public static void setMetrics(LicenseMetrics listener) {
+        metrics = listener;
+    }
+
 }
@@ -0,0 +1,92 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * This class test the {@link Base64} codec.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class Base64Test {
+
+    @Test
+    public void decode_WithVariousLength_SameAsByteArrayDecode() {
+        Random random = new Random(1);
+        for (int length = 0; length < 20; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            String encoded = Base64.encode(data);
+            assertEquals(encoded.length(), Base64.encodedLength(length));
+            assertEquals(length, Base64.decodedLength(encoded));
+            assertArrayEquals(data, Base64.decode(encoded));
+
+            // Decode into buffers
+            byte[] dst = new byte[length + 2];
+            assertEquals(length, Base64.decode(encoded, dst, 2));
+            assertArrayEquals(data, Arrays.copyOfRange(dst, 2, length + 2));
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            assertEquals(length, Base64.decode(ByteBuffer.wrap(encoded.getBytes()), buffer));
+            assertArrayEquals(data, buffer.array());
+
+            // Encode into buffer
+            byte[] chars = new byte[Base64.encodedLength(length)];
+            assertEquals(chars.length, Base64.encode(data, 0, length, chars, 0));
+            assertEquals(encoded, new String(chars));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_WithInvalidCharacter_ThrowException() {
+        Base64.decode("ab\u00e9=");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_WithInvalidLength_ThrowException() {
+        Base64.decode("abc");
+    }
+
+    @Test
+    public void streams_WithLargeData_RoundTrip() throws IOException {
+        byte[] data = new byte[10000];
+        new Random(2).nextBytes(data);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        OutputStream out = new Base64.EncodingOutputStream(buf);
+        out.write(data, 0, 5000);
+        out.write(data[5000]);
+        out.write(data, 5001, 4999);
+        out.close();
+        assertEquals(Base64.encode(data), buf.toString("US-ASCII"));
+
+        InputStream in = new Base64.DecodingInputStream(new ByteArrayInputStream(buf.toByteArray()));
+        byte[] decoded = LicenseManager.readAll(in);
+        assertArrayEquals(data, decoded);
+    }
+
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link LicenseBundle}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class LicenseBundleTest {
+
+    private LicenseManager manager;
+
+    private File file;
+
+    @Before
+    public void init() throws Exception {
+        manager = new LicenseManager(getClass().getResourceAsStream("/pubkey.der"), getClass().getResourceAsStream("/privkey.der"));
+        file = File.createTempFile("unittest", ".bundle");
+        List<License> licenses = new ArrayList<License>();
+        for (int i = 0; i < 100; i++) {
+            License license = new License();
+            license.setProperty(License.ID, "tenant" + i);
+            license.setProperty(License.NAME, "Tenant \u00e9 " + i);
+            licenses.add(license);
+        }
+        LicenseBundle.write(manager, licenses, License.ID, file);
+    }
+
+    @After
+    public void cleanup() {
+        file.delete();
+    }
+
+    @Test
+    public void get_WithKey_ReturnLicense() throws Exception {
+        LicenseBundle bundle = new LicenseBundle(manager, file);
+        assertEquals(100, bundle.size());
+        ImmutableLicense license = bundle.get("tenant42");
+        assertEquals("Tenant \u00e9 42", license.getProperty(License.NAME));
+        assertSame(license, bundle.get("tenant42"));
+        assertNull(bundle.get("missing"));
+        assertEquals("tenant0", bundle.getKey(0));
+        assertEquals(0, bundle.indexOf("tenant0"));
+    }
+
+    @Test
+    public void asList_WithSubList_ReturnAllLicenses() throws Exception {
+        List<ImmutableLicense> list = new LicenseBundle(manager, file).asList();
+        int count = 0;
+        for (int start = 0; start < list.size(); start += 50) {
+            for (ImmutableLicense license : list.subList(start, start + 50)) {
+                assertNotNull(license);
+                count++;
+            }
+        }
+        assertEquals(100, count);
+    }
+
+    @Test
+    public void get_WithModifiedLicense_ThrowException() throws Exception {
+        // Modify the signature of the last license.
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(raf.length() - 1);
+            int b = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(b ^ 0xff);
+        } finally {
+            raf.close();
+        }
+        LicenseBundle bundle = new LicenseBundle(manager, file);
+        assertNotNull(bundle.get(0));
+        try {
+            bundle.get(bundle.size() - 1);
+            fail("invalid signature expected");
+        } catch (LicenseException e) {
+            // Expected
+        }
+        assertNull(bundle.asList().get(bundle.size() - 1));
+    }
+
+    @Test
+    public void get_WithSwappedIndexEntry_ThrowException() throws Exception {
+        // Swap the license offset and length of the first two entries of the index.
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            byte[] first = new byte[8];
+            byte[] second = new byte[8];
+            raf.seek(12 + 8);
+            raf.readFully(first);
+            raf.seek(12 + 16 + 8);
+            raf.readFully(second);
+            raf.seek(12 + 8);
+            raf.write(second);
+            raf.seek(12 + 16 + 8);
+            raf.write(first);
+        } finally {
+            raf.close();
+        }
+        LicenseBundle bundle = new LicenseBundle(manager, file);
+        assertEquals("tenant0", bundle.getKey(0));
+        try {
+            bundle.get("tenant0");
+            fail("exception expected");
+        } catch (LicenseException e) {
+            // Expected
+        }
+        assertNull(bundle.asList().get(1));
+        assertEquals("Tenant \u00e9 2", bundle.get("tenant2").getProperty(License.NAME));
+    }
+
+    @Test
+    public void get_WithOtherKeyProperty_ThrowException() throws Exception {
+        List<License> licenses = new ArrayList<License>();
+        License license = new License();
+        license.setProperty(License.ID, "tenant");
+        license.setProperty(License.LICENSE_NUMBER, "1234");
+        licenses.add(license);
+        LicenseBundle.write(manager, licenses, License.LICENSE_NUMBER, file);
+        assertEquals("tenant", new LicenseBundle(manager, file, License.LICENSE_NUMBER).get("1234").getProperty(License.ID));
+        try {
+            new LicenseBundle(manager, file).get("1234");
+            fail("exception expected");
+        } catch (LicenseException e) {
+            // Expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void write_WithDuplicateKey_ThrowException() throws Exception {
+        License license = new License();
+        license.setProperty(License.ID, "same");
+        List<License> licenses = new ArrayList<License>();
+        licenses.add(license);
+        licenses.add(license);
+        LicenseBundle.write(manager, licenses, License.ID, file);
+    }
+
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link LicenseGuard}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class LicenseGuardTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private static License createLicense(String type, Date expiration) {
+        License license = new License();
+        license.setProperty(License.LICENSE_TYPE, type);
+        license.setExpiration(expiration);
+        return license;
+    }
+
+    /**
+     * Create a trial license expiring after the given delay. The expiration is a date, so the license is created in a
+     * time zone where that date starts at the expected time.
+     */
+    private static ImmutableLicense createTrialLicense(long delay) {
+        long expiration = System.currentTimeMillis() + delay;
+        TimeZone timeZone = TimeZone.getDefault();
+        TimeZone.setDefault(new SimpleTimeZone((int) -(expiration % DAY), "unittest"));
+        try {
+            return createLicense(License.TYPE_TRIAL, new Date(expiration)).freeze();
+        } finally {
+            TimeZone.setDefault(timeZone);
+        }
+    }
+
+    /**
+     * Wait until the guard reports the expected state.
+     */
+    private static boolean waitForCheck(LicenseGuard guard, boolean expected) throws InterruptedException {
+        for (int i = 0; i < 100 && guard.check() != expected; i++) {
+            Thread.sleep(50);
+        }
+        return guard.check();
+    }
+
+    @Test
+    public void check_WithoutLicense_ReturnFalse() {
+        LicenseGuard guard = new LicenseGuard("1.0");
+        assertFalse(guard.check());
+        assertNull(guard.getLicense());
+    }
+
+    @Test
+    public void check_WithLifetimeLicense_ReturnTrue() {
+        LicenseGuard guard = new LicenseGuard("1.0");
+        guard.setLicense(createLicense(License.TYPE_LIFETIME, null));
+        assertTrue(guard.check());
+        guard.setLicense((License) null);
+        assertFalse(guard.check());
+    }
+
+    @Test
+    public void check_WithTrialLicense_ReturnValidity() {
+        LicenseGuard guard = new LicenseGuard("1.0");
+        guard.setLicense(createLicense(License.TYPE_TRIAL, new Date(System.currentTimeMillis() + 2 * DAY)));
+        assertTrue(guard.check());
+        guard.setLicense(createLicense(License.TYPE_TRIAL, new Date(System.currentTimeMillis() - 2 * DAY)));
+        assertFalse(guard.check());
+        guard.close();
+    }
+
+    @Test
+    public void check_WithSingleVersionLicense_ReturnValidity() {
+        License license = createLicense(License.TYPE_SINGLE_VERSION, null);
+        license.setProperty(License.VERSION, "1\\..*");
+        LicenseGuard guard = new LicenseGuard("1.0");
+        guard.setLicense(license);
+        assertTrue(guard.check());
+        guard = new LicenseGuard("2.0");
+        guard.setLicense(license);
+        assertFalse(guard.check());
+    }
+
+    @Test
+    public void check_WithTrialLicenseExpiring_ReturnFalse() throws InterruptedException {
+        LicenseGuard guard = new LicenseGuard("1.0");
+        ImmutableLicense license = createTrialLicense(300);
+        guard.setLicense(license);
+        assertTrue(guard.check());
+        assertFalse(waitForCheck(guard, false));
+        assertSame(license, guard.getLicense());
+    }
+
+    @Test
+    public void check_WithLicenseReplaced_KeepNewState() throws InterruptedException {
+        LicenseGuard guard = new LicenseGuard("1.0");
+        guard.setLicense(createTrialLicense(200));
+        guard.setLicense(createLicense(License.TYPE_LIFETIME, null));
+        Thread.sleep(500);
+        assertTrue(guard.check());
+
+        // The timer is re-armed for the new trial license.
+        guard.setLicense(createTrialLicense(200));
+        guard.setLicense(createTrialLicense(800));
+        Thread.sleep(500);
+        assertTrue(guard.check());
+        assertFalse(waitForCheck(guard, false));
+
+        // The timer is cancelled when the guard is closed.
+        guard.setLicense(createTrialLicense(200));
+        guard.close();
+        Thread.sleep(500);
+        assertTrue(guard.check());
+    }
+
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link LicenseKeyring}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class LicenseKeyringTest {
+
+    private LicenseManager oldManager;
+
+    private LicenseManager newManager;
+
+    private LicenseKeyring keyring;
+
+    @Before
+    public void initKeyring() throws Exception {
+        oldManager = new LicenseManager(getClass().getResourceAsStream("/pubkey.der"), getClass().getResourceAsStream("/privkey.der"));
+        LicenseVerifier oldVerifier = LicenseVerifier.getInstance(getClass().getResourceAsStream("/pubkey.der"));
+        KeyPair keyPair = generateKeyPair();
+        newManager = new LicenseManager(keyPair.getPublic().getEncoded(), keyPair.getPrivate().getEncoded());
+        LicenseVerifier newVerifier = LicenseVerifier.getInstance(keyPair.getPublic().getEncoded());
+        newManager.setKeyId(newVerifier.getKeyId());
+
+        keyring = new LicenseKeyring();
+        keyring.setDefaultVerifier(oldVerifier);
+        assertEquals(newVerifier.getKeyId(), keyring.add(newVerifier));
+    }
+
+    private static KeyPair generateKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(256);
+        return generator.generateKeyPair();
+    }
+
+    @Test
+    public void readLicense_WithOldAndNewKey_ReadLicense() throws Exception {
+        License license = new License();
+        license.setProperty(License.NAME, "A test name");
+        LicenseManager manager = new LicenseManager(keyring);
+
+        License read = manager.readLicense(newManager.toByteArray(license, LicenseFormat.TEXT));
+        assertEquals("A test name", read.getProperty(License.NAME));
+        assertEquals(newManager.getKeyId(), read.getProperty(License.KEY_ID));
+        // The license is not modified.
+        assertNull(license.getProperty(License.KEY_ID));
+
+        read = manager.readLicense(oldManager.toByteArray(license, LicenseFormat.BINARY));
+        assertEquals("A test name", read.getProperty(License.NAME));
+        assertNull(read.getProperty(License.KEY_ID));
+    }
+
+    @Test
+    public void readLicense_WithRemovedKey_ThrowException() throws Exception {
+        License license = new License();
+        byte[] data = newManager.toByteArray(license, LicenseFormat.TEXT);
+        LicenseManager manager = new LicenseManager(keyring);
+        keyring.remove(newManager.getKeyId());
+        try {
+            manager.readLicense(data);
+            fail("exception expected");
+        } catch (LicenseException e) {
+            // Expected
+        }
+        // Without default verifier, licenses without key identifier are rejected.
+        data = oldManager.toByteArray(license, LicenseFormat.TEXT);
+        keyring.setDefaultVerifier(null);
+        try {
+            manager.readLicense(data);
+            fail("exception expected");
+        } catch (LicenseException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void readLicense_WithWrongKeyId_ThrowException() throws Exception {
+        License license = new License();
+        // Signed by the old key, but claiming to be signed by the new one.
+        oldManager.setKeyId(newManager.getKeyId());
+        byte[] data = oldManager.toByteArray(license, LicenseFormat.TEXT);
+        try {
+            new LicenseManager(keyring).readLicense(data);
+            fail("exception expected");
+        } catch (LicenseException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void readLicenseFile_WithCachedLicenseOfRemovedKey_ThrowException() throws Exception {
+        File file = new File("unittest.lic");
+        newManager.writeLicense(new License(), file);
+        LicenseManager manager = new LicenseManager(keyring);
+        manager.setCache(new LicenseCache(10));
+        manager.readLicenseFile(file);
+        manager.readLicenseFile(file);
+        keyring.remove(newManager.getKeyId());
+        try {
+            manager.readLicenseFile(file);
+            fail("exception expected");
+        } catch (LicenseException e) {
+            // Expected
+        }
+    }
+
+}
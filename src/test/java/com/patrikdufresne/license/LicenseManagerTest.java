@@ -17,16 +17,43 @@ package com.patrikdufresne.license;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
 import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.patrikdufresne.license.util.AbstractLogger;
+import com.patrikdufresne.license.util.DefaultLicenseMetrics;
+import com.patrikdufresne.license.util.LicenseMetrics.Stage;
+import com.patrikdufresne.license.util.Policy;
+
 /**
  * This class test all the functionnality provided by the {@link LicenseManager}
  * .
@@ -109,4 +136,455 @@ public class LicenseManagerTest {
 
     }
 
+    /**
+     * Check if a single license manager may be used by multiple threads to sign and verify.
+     */
+    @Test
+    public void verify_WithMultipleThreads_VerifySignatures() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 64; i++) {
+                final License license = new License();
+                license.setProperty(License.NAME, "name" + i);
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        byte[] data = manager.writeLicenseToByteArray(license);
+                        byte[] sig = manager.sign(data);
+                        // Make sure a failed verification doesn't break the next one.
+                        if (manager.verify(new byte[] { 1, 2, 3 }, sig)) {
+                            return Boolean.FALSE;
+                        }
+                        return Boolean.valueOf(manager.verify(data, sig));
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get().booleanValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void readLicenseFile_WithCache_ReturnCopyOfCachedLicense() throws Exception {
+        License license = new License();
+        license.setProperty(License.NAME, "A test name");
+        File file = new File("unittest.lic");
+        manager.writeLicense(license, file);
+        manager.setCache(new LicenseCache(10));
+
+        License license1 = manager.readLicenseFile(file);
+        license1.setProperty(License.NAME, "modified");
+        License license2 = manager.readLicenseFile(file);
+        assertEquals("A test name", license2.getProperty(License.NAME));
+        assertEquals(1, manager.getCache().size());
+    }
+
+    @Test
+    public void readLicenseFile_WithCacheAndModifiedFile_ReadLicenseAgain() throws Exception {
+        License license = new License();
+        license.setProperty(License.NAME, "name-1");
+        File file = new File("unittest.lic");
+        manager.writeLicense(license, file);
+        manager.setCache(new LicenseCache(10, true));
+        assertEquals("name-1", manager.readLicenseFile(file).getProperty(License.NAME));
+
+        long lastModified = file.lastModified();
+        license.setProperty(License.NAME, "name-2");
+        manager.writeLicense(license, file);
+        file.setLastModified(lastModified);
+        assertEquals("name-2", manager.readLicenseFile(file).getProperty(License.NAME));
+    }
+
+    @Test
+    public void writeLicenses_WithMultipleLicenses_CreateTheFiles() throws Exception {
+        Map<File, License> licenses = new LinkedHashMap<File, License>();
+        for (int i = 0; i < 8; i++) {
+            License license = new License();
+            license.setProperty(License.NAME, "name" + i);
+            licenses.put(new File("unittest-bulk" + i + ".lic"), license);
+        }
+        // Destination folder doesn't exists.
+        licenses.put(new File("unknown/unittest-bulk.lic"), new License());
+
+        List<Future<File>> results = manager.writeLicenses(licenses);
+        assertEquals(9, results.size());
+        try {
+            for (int i = 0; i < 8; i++) {
+                File file = results.get(i).get();
+                assertEquals("name" + i, manager.readLicenseFile(file).getProperty(License.NAME));
+            }
+            try {
+                results.get(8).get();
+                fail("should fail to write into a missing folder");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        } finally {
+            for (File file : licenses.keySet()) {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    public void getInstance_WithSameKey_ReturnSameVerifier() throws Exception {
+        LicenseVerifier verifier1 = LicenseVerifier.getInstance(getClass().getResourceAsStream("/pubkey.der"));
+        LicenseVerifier verifier2 = LicenseVerifier.getInstance(getClass().getResourceAsStream("/pubkey.der"));
+        assertSame(verifier1, verifier2);
+        assertEquals(64, verifier1.getFingerprint().length());
+    }
+
+    @Test
+    public void validate_WithVerifier_ReturnLicense() throws Exception {
+        License license = new License();
+        license.setProperty(License.NAME, "A test name");
+        File file = new File("unittest.lic");
+        manager.writeLicense(license, file);
+        LicenseVerifier verifier = LicenseVerifier.getInstance(getClass().getResourceAsStream("/pubkey.der"));
+        License license2 = LicenseManager.validate(verifier, new File("missing.lic"), file);
+        assertEquals("A test name", license2.getProperty(License.NAME));
+    }
+
+    @Test
+    public void prewarm_WithKeys_ReadLicense() throws Exception {
+        final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+        Policy.setLog(new AbstractLogger() {
+            @Override
+            public void log(String level, String message) {
+                messages.add(message);
+            }
+
+            @Override
+            public void log(String level, Throwable exception) {
+                messages.add(exception.toString());
+            }
+
+            @Override
+            public boolean isEnabled(String level) {
+                return true;
+            }
+        });
+        try {
+            manager.prewarm().get(10, TimeUnit.SECONDS);
+            assertEquals(1, messages.size());
+            assertTrue(messages.get(0), messages.get(0).startsWith("license manager pre-warmed in"));
+        } finally {
+            Policy.setLog(null);
+        }
+        License license = new License();
+        license.setProperty(License.NAME, "A test name");
+        byte[] data = manager.toByteArray(license, LicenseFormat.TEXT);
+        assertEquals("A test name", manager.readLicense(data).getProperty(License.NAME));
+
+        LicenseKeyring keyring = new LicenseKeyring();
+        keyring.add(LicenseVerifier.getInstance(getClass().getResourceAsStream("/pubkey.der")));
+        keyring.add(createVerifier());
+        new LicenseManager(keyring).prewarm().get(10, TimeUnit.SECONDS);
+    }
+
+    private static LicenseVerifier createVerifier() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(256);
+        return LicenseVerifier.getInstance(generator.generateKeyPair().getPublic().getEncoded());
+    }
+
+    @Test
+    public void validate_WithValidCandidates_VerifyOnce() throws Exception {
+        LicenseVerifier verifier = LicenseVerifier.getInstance(getClass().getResourceAsStream("/pubkey.der"));
+        License license = new License();
+        license.setProperty(License.NAME, "first");
+        File first = new File("unittest-first.lic");
+        manager.writeLicense(license, first);
+        File second = new File("unittest-second.lic");
+        manager.writeLicense(license, second);
+        DefaultLicenseMetrics metrics = new DefaultLicenseMetrics();
+        Policy.setMetrics(metrics);
+        LicenseManager.setDefaultCache(new LicenseCache(10));
+        try {
+            LicenseManager.validate(verifier, first, second);
+            assertEquals(2, metrics.getCount(Stage.PARSE));
+            assertEquals(1, metrics.getCount(Stage.VERIFY));
+
+            // Cache hit: no parse and no verify.
+            metrics.reset();
+            assertEquals("first", LicenseManager.validate(verifier, first, second).getProperty(License.NAME));
+            assertEquals(0, metrics.getCount(Stage.VERIFY));
+            assertEquals(0, metrics.getCount(Stage.PARSE));
+
+            // The file changed: parsed and verified again.
+            manager.writeLicense(license, first);
+            first.setLastModified(first.lastModified() - 2000);
+            metrics.reset();
+            LicenseManager.validate(verifier, first, second);
+            assertEquals(1, metrics.getCount(Stage.VERIFY));
+        } finally {
+            LicenseManager.setDefaultCache(null);
+            Policy.setMetrics(null);
+        }
+    }
+
+    @Test
+    public void validate_WithManyCandidates_ReturnFirstValidLicense() throws Exception {
+        LicenseVerifier verifier = LicenseVerifier.getInstance(getClass().getResourceAsStream("/pubkey.der"));
+        // Expired license
+        License expired = new License();
+        expired.setProperty(License.LICENSE_TYPE, License.TYPE_TRIAL);
+        expired.setExpiration(new Date(System.currentTimeMillis() - 24 * 60 * 60 * 1000L));
+        File expiredFile = new File("unittest-expired.lic");
+        manager.writeLicense(expired, expiredFile);
+        // Modified license
+        License license = new License();
+        license.setProperty(License.NAME, "first");
+        File modifiedFile = new File("unittest-modified.lic");
+        manager.writeLicense(license, modifiedFile);
+        String data = new String(Files.readAllBytes(modifiedFile.toPath()), "UTF-8");
+        Files.write(modifiedFile.toPath(), data.replace("first", "other").getBytes("UTF-8"));
+        // Valid licenses
+        File first = new File("unittest-first.lic");
+        manager.writeLicense(license, first);
+        license.setProperty(License.NAME, "second");
+        File second = new File("unittest-second.lic");
+        manager.writeLicense(license, second);
+
+        License read = LicenseManager.validate(verifier, expiredFile, new File("missing.lic"), modifiedFile, first, second);
+        assertEquals("first", read.getProperty(License.NAME));
+        read = LicenseManager.validate(verifier, second, first);
+        assertEquals("second", read.getProperty(License.NAME));
+
+        // The error of the last candidate is reported.
+        try {
+            LicenseManager.validate(verifier, modifiedFile, expiredFile);
+            fail("exception expected");
+        } catch (LicenseExpiredException e) {
+            // Expected
+        }
+        try {
+            LicenseManager.validate(verifier, expiredFile, modifiedFile);
+            fail("exception expected");
+        } catch (LicenseException e) {
+            assertEquals("invalid license signature", e.getMessage());
+        }
+        try {
+            LicenseManager.validate(verifier, new File("missing.lic"));
+            fail("exception expected");
+        } catch (LicenseException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Reference implementation of the canonical form using an object stream.
+     */
+    private static byte[] writeWithObjectOutputStream(License lic) throws IOException {
+        ByteArrayOutputStream dataStream = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(dataStream);
+        List<String> keys = new ArrayList<String>(lic.getProperties().keySet());
+        Collections.sort(keys);
+        for (String key : keys) {
+            out.writeChars(key);
+            out.writeChars(lic.getProperty(key));
+        }
+        out.flush();
+        return dataStream.toByteArray();
+    }
+
+    @Test
+    public void writeLicenseToByteArray_WithVariousSizes_SameAsObjectOutputStream() throws Exception {
+        License license = new License();
+        assertArrayEquals(writeWithObjectOutputStream(license), manager.writeLicenseToByteArray(license));
+        // Sizes around the short block (255 bytes) and block (1024 bytes) limits.
+        for (int size : new int[] { 1, 126, 127, 128, 500, 511, 512, 513, 1500, 5000 }) {
+            char[] value = new char[size];
+            Arrays.fill(value, '\u00e9');
+            license.setProperty("a", new String(value));
+            assertArrayEquals(writeWithObjectOutputStream(license), manager.writeLicenseToByteArray(license));
+            license.setProperty("key" + size, "value");
+            assertArrayEquals(writeWithObjectOutputStream(license), manager.writeLicenseToByteArray(license));
+        }
+        // Stream and byte array signatures are identical.
+        byte[] sig = manager.sign(writeWithObjectOutputStream(license));
+        File file = new File("unittest.lic");
+        manager.writeLicense(license, file);
+        assertTrue(manager.verify(writeWithObjectOutputStream(manager.readLicenseFile(file)), sig));
+    }
+
+    @Test
+    public void readLicense_WithBytesAndMappedFile_ReadLicense() throws Exception {
+        License license = new License();
+        license.setProperty(License.NAME, "A test name");
+        File file = new File("unittest.lic");
+        manager.writeLicense(license, file);
+
+        byte[] data = Files.readAllBytes(file.toPath());
+        assertEquals("A test name", manager.readLicense(data).getProperty(License.NAME));
+        manager.setMemoryMapThreshold(0);
+        assertEquals("A test name", manager.readLicense(file.toPath()).getProperty(License.NAME));
+    }
+
+    @Test(expected = LicenseException.class)
+    public void readLicense_WithFileTooLarge_ThrowException() throws Exception {
+        License license = new License();
+        File file = new File("unittest.lic");
+        manager.writeLicense(license, file);
+        manager.setMaxLicenseSize(10);
+        manager.readLicenseFile(file);
+    }
+
+    private static License createSpecialLicense() {
+        License license = new License();
+        license.setProperty(License.NAME, " leading space, trailing space ");
+        license.setProperty(License.EMAIL, "a=b:c#d!e\\f\tg\nh\ri\fj");
+        license.setProperty("key with spaces=and:separators", "value");
+        license.setProperty("unicode", "caf\u00e9 \u4e2d\u6587 \ud83d\ude00 \u0001");
+        license.setProperty("empty", "");
+        return license;
+    }
+
+    @Test
+    public void readLicense_WithPropertiesFile_ReadLicense() throws Exception {
+        License license = createSpecialLicense();
+        Properties prop = new Properties();
+        for (Map.Entry<String, String> e : license.getProperties().entrySet()) {
+            prop.setProperty(e.getKey(), e.getValue());
+        }
+        prop.setProperty("signature", Base64.encode(manager.sign(manager.writeLicenseToByteArray(license))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        prop.store(new OutputStreamWriter(out, "UTF-8"), "License file");
+
+        assertEquals(license.getProperties(), manager.readLicense(out.toByteArray()).getProperties());
+    }
+
+    @Test
+    public void readLicense_WithContinuationAndComments_ReadLicense() throws Exception {
+        License license = new License();
+        license.setProperty(License.NAME, "A long name");
+        license.setProperty(License.EMAIL, "test@example.com");
+        String signature = Base64.encode(manager.sign(manager.writeLicenseToByteArray(license)));
+        String data = "# comment\r\n! other comment \\\n  \n"
+                + "name  =  A long \\\r\n      name\r"
+                + "email : test@example.com\n"
+                + "signature "
+                + signature.substring(0, 10)
+                + "\\\n\t"
+                + signature.substring(10);
+
+        assertEquals(license.getProperties(), manager.readLicense(data.getBytes("UTF-8")).getProperties());
+    }
+
+    @Test
+    public void writeLicense_WithSpecialCharacters_ReadByProperties() throws Exception {
+        License license = createSpecialLicense();
+        File file = new File("unittest.lic");
+        manager.writeLicense(license, file);
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        Properties prop = new Properties();
+        prop.load(new InputStreamReader(new ByteArrayInputStream(data), "UTF-8"));
+        assertNotNull(prop.remove("signature"));
+        assertEquals(license.getProperties(), prop);
+        assertEquals(license.getProperties(), manager.readLicense(data).getProperties());
+        // Output is deterministic
+        manager.writeLicense(license, file);
+        assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+    }
+
+    private static LicenseManager createManager(String keyAlgorithm, int keySize) throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(keyAlgorithm);
+        if (keySize > 0) {
+            generator.initialize(keySize);
+        }
+        KeyPair keyPair = generator.generateKeyPair();
+        return new LicenseManager(keyPair.getPublic().getEncoded(), keyPair.getPrivate().getEncoded());
+    }
+
+    private static void assertSignatureAlgorithm(LicenseManager manager, SignatureAlgorithm algorithm) throws Exception {
+        assertEquals(algorithm, manager.getSignatureAlgorithm());
+        License license = new License();
+        license.setProperty(License.NAME, "A test name");
+        File file = new File("unittest.lic");
+        manager.writeLicense(license, file);
+        // The license is not modified.
+        assertNull(license.getProperty(License.SIGNATURE_ALGORITHM));
+
+        License read = manager.readLicenseFile(file);
+        assertEquals("A test name", read.getProperty(License.NAME));
+        assertEquals(algorithm, SignatureAlgorithm.fromName(read.getProperty(License.SIGNATURE_ALGORITHM)));
+    }
+
+    @Test
+    public void writeLicense_WithEachSignatureAlgorithm_ReadLicense() throws Exception {
+        assertSignatureAlgorithm(manager, SignatureAlgorithm.SHA1_WITH_RSA);
+        LicenseManager pss = createManager("RSA", 2048);
+        pss.setSignatureAlgorithm(SignatureAlgorithm.RSASSA_PSS);
+        assertSignatureAlgorithm(pss, SignatureAlgorithm.RSASSA_PSS);
+        assertSignatureAlgorithm(createManager("EC", 256), SignatureAlgorithm.SHA256_WITH_ECDSA);
+        assertSignatureAlgorithm(createManager("Ed25519", 0), SignatureAlgorithm.ED25519);
+    }
+
+    @Test
+    public void readLicense_WithOtherKeyAlgorithm_ThrowException() throws Exception {
+        License license = new License();
+        File file = new File("unittest.lic");
+        createManager("Ed25519", 0).writeLicense(license, file);
+        try {
+            manager.readLicenseFile(file);
+            fail("invalid signature expected");
+        } catch (LicenseException e) {
+            // Expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setSignatureAlgorithm_WithOtherKeyAlgorithm_ThrowException() {
+        manager.setSignatureAlgorithm(SignatureAlgorithm.ED25519);
+    }
+
+    @Test
+    public void writeLicense_WithBinaryFormat_ReadLicense() throws Exception {
+        License license = createSpecialLicense();
+        File file = new File("unittest.lic");
+        manager.writeLicense(license, file, LicenseFormat.BINARY);
+        byte[] binary = Files.readAllBytes(file.toPath());
+        manager.writeLicense(license, file, LicenseFormat.TEXT);
+        byte[] text = Files.readAllBytes(file.toPath());
+
+        assertTrue(binary.length < text.length);
+        assertEquals(license.getProperties(), manager.readLicense(binary).getProperties());
+
+        // Signature algorithm restored from the binary header.
+        LicenseManager ed25519 = createManager("Ed25519", 0);
+        ed25519.writeLicense(license, file, LicenseFormat.BINARY);
+        License read = ed25519.readLicenseFile(file);
+        assertEquals("Ed25519", read.getProperty(License.SIGNATURE_ALGORITHM));
+        assertEquals(license.getProperty(License.NAME), read.getProperty(License.NAME));
+    }
+
+    @Test
+    public void readLicense_WithModifiedBinary_ThrowException() throws Exception {
+        License license = new License();
+        license.setProperty(License.NAME, "A test name");
+        File file = new File("unittest.lic");
+        manager.writeLicense(license, file, LicenseFormat.BINARY);
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        byte[] modified = data.clone();
+        modified[10] = 'X';
+        try {
+            manager.readLicense(modified);
+            fail("invalid signature expected");
+        } catch (LicenseException e) {
+            // Expected
+        }
+        try {
+            manager.readLicense(Arrays.copyOf(data, data.length - 1));
+            fail("truncated data expected");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
 }
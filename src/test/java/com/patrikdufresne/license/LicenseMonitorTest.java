@@ -0,0 +1,134 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link LicenseMonitor}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class LicenseMonitorTest {
+
+    private LicenseManager manager;
+
+    private File dir;
+
+    private File file;
+
+    private LicenseMonitor monitor;
+
+    @Before
+    public void init() throws Exception {
+        manager = new LicenseManager(getClass().getResourceAsStream("/pubkey.der"), getClass().getResourceAsStream("/privkey.der"));
+        dir = Files.createTempDirectory("license").toFile();
+        file = new File(dir, "application.lic");
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        if (monitor != null) {
+            monitor.close();
+        }
+        file.delete();
+        dir.delete();
+    }
+
+    private void writeLicense(String name) throws Exception {
+        License license = new License();
+        license.setProperty(License.NAME, name);
+        manager.writeLicense(license, file);
+    }
+
+    /**
+     * Wait until the monitor publish the expected name.
+     */
+    private String waitForName(String expected) throws InterruptedException {
+        String name = null;
+        for (int i = 0; i < 200; i++) {
+            ImmutableLicense license = monitor.getLicense();
+            name = license != null ? license.getProperty(License.NAME) : null;
+            if (expected == null ? name == null : expected.equals(name)) {
+                break;
+            }
+            Thread.sleep(50);
+        }
+        return name;
+    }
+
+    @Test
+    public void start_WithLicenseFile_PublishLicense() throws Exception {
+        writeLicense("first");
+        monitor = new LicenseMonitor(manager, file);
+        monitor.start();
+        assertEquals("first", monitor.getLicense().getProperty(License.NAME));
+        assertNull(monitor.getError());
+    }
+
+    @Test
+    public void start_WithLicenseChanged_PublishNewLicense() throws Exception {
+        monitor = new LicenseMonitor(manager, file);
+        monitor.setDebounceDelay(20, TimeUnit.MILLISECONDS);
+        monitor.start();
+        assertNull(monitor.getLicense());
+        assertNotNull(monitor.getError());
+
+        writeLicense("first");
+        assertEquals("first", waitForName("first"));
+        writeLicense("second");
+        assertEquals("second", waitForName("second"));
+        file.delete();
+        assertNull(waitForName(null));
+    }
+
+    @Test
+    public void reload_WithSingleVersionLicense_PublishLicense() throws Exception {
+        License license = new License();
+        license.setProperty(License.NAME, "single");
+        license.setProperty(License.LICENSE_TYPE, License.TYPE_SINGLE_VERSION);
+        license.setProperty(License.VERSION, "1.0");
+        manager.writeLicense(license, file);
+        monitor = new LicenseMonitor(manager, file);
+        ImmutableLicense published = monitor.reload();
+        assertNotNull(published);
+        assertNull(monitor.getError());
+        assertTrue(published.isValid(System.currentTimeMillis(), "1.0"));
+        assertFalse(published.isValid(System.currentTimeMillis(), "2.0"));
+    }
+
+    @Test
+    public void reload_WithExpiredLicense_PublishNothing() throws Exception {
+        License license = new License();
+        license.setProperty(License.LICENSE_TYPE, License.TYPE_TRIAL);
+        license.setExpiration(new Date(System.currentTimeMillis() - 1000));
+        manager.writeLicense(license, file);
+        monitor = new LicenseMonitor(manager, file);
+        assertNull(monitor.reload());
+        assertTrue(monitor.getError() instanceof LicenseExpiredException);
+    }
+
+}
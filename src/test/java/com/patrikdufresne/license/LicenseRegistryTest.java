@@ -0,0 +1,205 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link LicenseRegistry}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class LicenseRegistryTest {
+
+    /**
+     * Loader creating a license for any identifier.
+     */
+    private static class CountingLoader implements LicenseRegistry.Loader {
+
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public ImmutableLicense load(String id) throws LicenseException {
+            count.incrementAndGet();
+            if (id.startsWith("missing")) {
+                return null;
+            } else if (id.startsWith("invalid")) {
+                throw new LicenseException("invalid");
+            }
+            License license = new License();
+            license.setProperty(License.ID, id);
+            license.setProperty(License.LICENSE_NUMBER, "number-" + id);
+            license.setProperty(License.EMAIL, id + "@example.com");
+            return license.freeze();
+        }
+
+    }
+
+    @Test
+    public void get_WithLoadedLicense_ReturnCachedLicense() throws Exception {
+        CountingLoader loader = new CountingLoader();
+        LicenseRegistry registry = new LicenseRegistry(loader, 100, 0, TimeUnit.SECONDS);
+        ImmutableLicense license = registry.get("a");
+        assertEquals("a", license.getProperty(License.ID));
+        assertSame(license, registry.get("a"));
+        assertSame(license, registry.getByLicenseNumber("number-a"));
+        assertSame(license, registry.getByEmail("a@example.com"));
+        assertNull(registry.getByEmail("b@example.com"));
+        assertEquals(1, loader.count.get());
+        assertEquals(1, registry.getLoadCount());
+        assertEquals(2, registry.getMissCount());
+        assertEquals(3, registry.getHitCount());
+
+        registry.invalidate("a");
+        assertNull(registry.getByLicenseNumber("number-a"));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void get_WithMissingOrInvalidLicense_NotCached() throws Exception {
+        CountingLoader loader = new CountingLoader();
+        LicenseRegistry registry = new LicenseRegistry(loader, 100, 0, TimeUnit.SECONDS);
+        assertNull(registry.get("missing"));
+        try {
+            registry.get("invalid");
+            fail("exception expected");
+        } catch (LicenseException e) {
+            // Expected
+        }
+        assertEquals(0, registry.size());
+        assertNull(registry.get("missing"));
+        assertEquals(3, loader.count.get());
+    }
+
+    @Test
+    public void get_WithMaximumSize_EvictLeastRecentlyUsed() throws Exception {
+        CountingLoader loader = new CountingLoader();
+        LicenseRegistry registry = new LicenseRegistry(loader, 1, 0, TimeUnit.SECONDS);
+        registry.get("a");
+        registry.get("b");
+        assertEquals(1, registry.size());
+        assertEquals(1, registry.getEvictionCount());
+        assertNull(registry.getByEmail("a@example.com"));
+        registry.get("a");
+        assertEquals(3, loader.count.get());
+    }
+
+    @Test
+    public void get_WithExpiredLicense_LoadAgain() throws Exception {
+        CountingLoader loader = new CountingLoader();
+        LicenseRegistry registry = new LicenseRegistry(loader, 100, 1, TimeUnit.MILLISECONDS);
+        registry.get("a");
+        Thread.sleep(10);
+        assertNull(registry.getByEmail("a@example.com"));
+        registry.get("a");
+        assertEquals(2, loader.count.get());
+        Thread.sleep(10);
+        registry.cleanUp();
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void get_WithConcurrentRequests_LoadOnce() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountingLoader delegate = new CountingLoader();
+        final LicenseRegistry registry = new LicenseRegistry(new LicenseRegistry.Loader() {
+            @Override
+            public ImmutableLicense load(String id) throws LicenseException {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new LicenseException(e);
+                }
+                return delegate.load(id);
+            }
+        }, 100, 0, TimeUnit.SECONDS);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ImmutableLicense>> futures = new ArrayList<Future<ImmutableLicense>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<ImmutableLicense>() {
+                    @Override
+                    public ImmutableLicense call() throws Exception {
+                        return registry.get("a");
+                    }
+                }));
+            }
+            started.await();
+            Thread.sleep(50);
+            release.countDown();
+            ImmutableLicense first = futures.get(0).get();
+            for (Future<ImmutableLicense> f : futures) {
+                assertSame(first, f.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, delegate.count.get());
+    }
+
+    @Test
+    public void fileLoader_WithLicenseFile_ReadLicense() throws Exception {
+        LicenseManager manager = new LicenseManager(getClass().getResourceAsStream("/pubkey.der"), getClass().getResourceAsStream("/privkey.der"));
+        File dir = new File(".");
+        License license = new License();
+        license.setProperty(License.ID, "unittest-tenant");
+        File file = new File(dir, "unittest-tenant.lic");
+        File renamed = new File(dir, "unittest-other.lic");
+        manager.writeLicense(license, file);
+        File colon = new File(dir, "unittest:tenant.lic");
+        license.setProperty(License.ID, "unittest:tenant");
+        manager.writeLicense(license, colon);
+        try {
+            LicenseRegistry registry = new LicenseRegistry(LicenseRegistry.fileLoader(manager, dir), 10, 0, TimeUnit.SECONDS);
+            assertEquals("unittest-tenant", registry.get("unittest-tenant").getProperty(License.ID));
+            assertNull(registry.get("../unittest-tenant"));
+            // Drive letters and alternate data streams on Windows.
+            assertNull(registry.get("unittest:tenant"));
+            assertNull(registry.get("unittest-missing"));
+
+            // A license renamed to another tenant is rejected.
+            assertTrue(file.renameTo(renamed));
+            try {
+                registry.get("unittest-other");
+                fail("exception expected");
+            } catch (LicenseException e) {
+                // Expected
+            }
+            assertEquals(1, registry.size());
+        } finally {
+            file.delete();
+            renamed.delete();
+            colon.delete();
+        }
+    }
+
+}
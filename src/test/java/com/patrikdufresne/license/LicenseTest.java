@@ -0,0 +1,115 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+/**
+ * This class test the {@link License} and {@link ImmutableLicense}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class LicenseTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void freeze_WithTrialLicense_ValidateExpiration() throws LicenseException {
+        License license = new License();
+        license.setProperty(License.LICENSE_TYPE, License.TYPE_TRIAL);
+        license.setExpiration(new Date(System.currentTimeMillis() + 10 * DAY));
+        ImmutableLicense frozen = license.freeze();
+
+        assertEquals(LicenseType.TRIAL, frozen.getType());
+        assertEquals(license.getExpiration(), frozen.getExpiration());
+        assertTrue(frozen.isValid(System.currentTimeMillis(), null));
+        assertFalse(frozen.isValid(System.currentTimeMillis() + 20 * DAY, null));
+        frozen.validate(new Date(), null);
+        try {
+            frozen.validate(new Date(System.currentTimeMillis() + 20 * DAY), null);
+            fail("license should be expired");
+        } catch (LicenseExpiredException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void freeze_WithTrialLicenseWithoutExpiration_Expired() {
+        License license = new License();
+        license.setProperty(License.LICENSE_TYPE, License.TYPE_TRIAL);
+        assertFalse(license.freeze().isValid(System.currentTimeMillis(), null));
+    }
+
+    @Test
+    public void freeze_WithSingleVersionLicense_ValidateVersion() {
+        License license = new License();
+        license.setProperty(License.LICENSE_TYPE, License.TYPE_SINGLE_VERSION);
+        license.setProperty(License.VERSION, ">=2.0 <3.0");
+        ImmutableLicense frozen = license.freeze();
+        assertEquals(LicenseType.SINGLE_VERSION, frozen.getType());
+        assertTrue(frozen.isValid(System.currentTimeMillis(), "2.1"));
+        assertFalse(frozen.isValid(System.currentTimeMillis(), "3.1"));
+
+        // Invalid regular expression can't be validated.
+        license.setProperty(License.VERSION, "(");
+        assertFalse(license.freeze().isValid(System.currentTimeMillis(), "2.1"));
+    }
+
+    @Test
+    public void freeze_WithModifiedLicense_NotModified() {
+        License license = new License();
+        license.setProperty(License.NAME, "name");
+        ImmutableLicense frozen = license.freeze();
+        license.setProperty(License.NAME, "modified");
+        assertEquals("name", frozen.getProperty(License.NAME));
+        assertEquals(LicenseType.OTHER, frozen.getType());
+        assertEquals("name", frozen.toLicense().getProperty(License.NAME));
+    }
+
+    @Test
+    public void isEnabled_WithFeatures_ReturnDeclaredFeatures() {
+        int export = FeatureRegistry.register("test-export");
+        int report = FeatureRegistry.register("test-report");
+        License license = new License();
+        assertFalse(license.isEnabled(export));
+
+        license.setProperty(License.FEATURES, " test-export , test-late");
+        assertTrue(license.isEnabled(export));
+        assertFalse(license.isEnabled(report));
+        assertFalse(license.isEnabled(-1));
+        // Features declared by the license are not registered.
+        assertEquals(-1, FeatureRegistry.getId("test-late"));
+
+        ImmutableLicense frozen = license.freeze();
+        license.setProperty(License.FEATURES, "test-report");
+        assertTrue(license.isEnabled(report));
+        assertFalse(license.isEnabled(export));
+        assertTrue(frozen.isEnabled(export));
+        assertFalse(frozen.isEnabled(report));
+        // Registered too late for the compiled license.
+        int late = FeatureRegistry.register("test-late");
+        assertEquals("test-late", FeatureRegistry.getName(late));
+        assertFalse(frozen.isEnabled(late));
+        license.setProperty(License.FEATURES, "test-late");
+        assertTrue(license.isEnabled(late));
+    }
+
+}
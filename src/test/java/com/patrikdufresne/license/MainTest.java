@@ -0,0 +1,163 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test the batch commands of {@link Main}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class MainTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String resource(String name) throws URISyntaxException {
+        return new File(getClass().getResource(name).toURI()).getPath();
+    }
+
+    private File write(String name, String data) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), data.getBytes("UTF-8"));
+        return file;
+    }
+
+    @Test
+    public void batchCreate_WithRecords_CreateLicenseFiles() throws Exception {
+        File input = write("records.csv", "name,licenseNumber,licenseType,file\nJohn,1,lifetime,\nJane,,lifetime,jane.lic\n");
+        File output = new File(folder.getRoot(), "out");
+        assertEquals(0, Main.batchCreate(resource("/pubkey.der"), resource("/privkey.der"), input.getPath(), output.getPath(), 2));
+        LicenseManager manager = new LicenseManager(new File(resource("/pubkey.der")), null);
+        assertEquals("John", manager.readLicenseFile(new File(output, "1.lic")).getProperty(License.NAME));
+        License jane = manager.readLicenseFile(new File(output, "jane.lic"));
+        assertEquals("Jane", jane.getProperty(License.NAME));
+        assertNull(jane.getProperty("file"));
+    }
+
+    @Test
+    public void batchCreate_WithPathInFileName_RejectRecord() throws Exception {
+        File input = write("records.jsonl", "{\"name\": \"a\", \"licenseType\": \"lifetime\", \"file\": \"../escape.lic\"}\n"
+                + "{\"name\": \"b\", \"licenseType\": \"lifetime\", \"licenseNumber\": \"../../escape\"}\n"
+                + "{\"name\": \"c\", \"licenseType\": \"lifetime\", \"id\": \".hidden\"}\n"
+                + "{\"name\": \"d\", \"licenseType\": \"lifetime\", \"file\": \"sub\\\\escape.lic\"}\n"
+                + "{\"name\": \"e\", \"licenseType\": \"lifetime\", \"file\": \"valid.lic\"}\n");
+        File output = folder.newFolder("out");
+        assertEquals(4, Main.batchCreate(resource("/pubkey.der"), resource("/privkey.der"), input.getPath(), output.getPath(), 1));
+        assertArrayEquals(new String[] { "valid.lic" }, output.list());
+        assertFalse(new File(folder.getRoot(), "escape.lic").exists());
+    }
+
+    @Test
+    public void batchCreate_WithMalformedRecord_CreateOtherLicenses() throws Exception {
+        File input = write("records.jsonl", "{\"name\": \"a\", \"licenseType\": \"lifetime\", \"file\": \"a.lic\"}\n"
+                + "{\"name\" \"b\", \"licenseType\": \"lifetime\", \"file\": \"b.lic\"}\n"
+                + "{\"name\": \"c\", \"licenseType\": \"lifetime\", \"file\": \"c.lic\"}\n");
+        File output = folder.newFolder("out");
+        assertEquals(1, Main.batchCreate(resource("/pubkey.der"), resource("/privkey.der"), input.getPath(), output.getPath(), 1));
+        String[] files = output.list();
+        Arrays.sort(files);
+        assertArrayEquals(new String[] { "a.lic", "c.lic" }, files);
+
+        input = write("records.csv", "name,licenseType,file\na,lifetime,a2.lic\nb,lifetime,b2.lic,extra\nc,lifetime,c2.lic\n");
+        assertEquals(1, Main.batchCreate(resource("/pubkey.der"), resource("/privkey.der"), input.getPath(), output.getPath(), 1));
+        assertTrue(new File(output, "a2.lic").exists());
+        assertFalse(new File(output, "b2.lic").exists());
+        assertTrue(new File(output, "c2.lic").exists());
+    }
+
+    @Test
+    public void batchCreate_WithJsonLinesOnStdin_CreateLicenseFiles() throws Exception {
+        String data = "\uFEFF\n  {\"name\": \"a\", \"licenseType\": \"lifetime\", \"file\": \"a.lic\"}\n";
+        File output = folder.newFolder("out");
+        InputStream stdin = System.in;
+        System.setIn(new ByteArrayInputStream(data.getBytes("UTF-8")));
+        try {
+            assertEquals(0, Main.batchCreate(resource("/pubkey.der"), resource("/privkey.der"), "-", output.getPath(), 1));
+        } finally {
+            System.setIn(stdin);
+        }
+        LicenseManager manager = new LicenseManager(new File(resource("/pubkey.der")), null);
+        assertEquals("a", manager.readLicenseFile(new File(output, "a.lic")).getProperty(License.NAME));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchCreate_WithoutThreads_ThrowException() throws Exception {
+        File input = write("records.csv", "name\nJohn\n");
+        Main.batchCreate(resource("/pubkey.der"), resource("/privkey.der"), input.getPath(), folder.getRoot().getPath(), 0);
+    }
+
+    @Test
+    public void batchValidate_WithLicenseFiles_ReportStatus() throws Exception {
+        LicenseManager manager = new LicenseManager(resource("/pubkey.der"), resource("/privkey.der"));
+        File dir = folder.newFolder("licenses");
+        License license = new License();
+        license.setProperty(License.LICENSE_TYPE, License.TYPE_LIFETIME);
+        manager.writeLicense(license, new File(dir, "valid.lic"));
+        license.setProperty(License.LICENSE_TYPE, License.TYPE_TRIAL);
+        license.setExpiration(new Date(System.currentTimeMillis() - 24 * 60 * 60 * 1000L));
+        manager.writeLicense(license, new File(dir, "expired.lic"));
+        license.setProperty(License.LICENSE_TYPE, License.TYPE_SINGLE_VERSION);
+        license.setProperty(License.VERSION, "1.0");
+        manager.writeLicense(license, new File(dir, "version.lic"));
+        license.setProperty(License.LICENSE_TYPE, License.TYPE_LIFETIME);
+        license.setProperty(License.NAME, "first");
+        File modified = new File(dir, "modified.lic");
+        manager.writeLicense(license, modified);
+        String data = new String(Files.readAllBytes(modified.toPath()), "UTF-8");
+        Files.write(modified.toPath(), data.replace("first", "other").getBytes("UTF-8"));
+        Files.write(new File(dir, "unsigned.lic").toPath(), "name=other\n".getBytes("UTF-8"));
+        Files.write(new File(dir, "ignored.txt").toPath(), "name=other\n".getBytes("UTF-8"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream report = new PrintStream(out, true, "UTF-8");
+        assertEquals(4, Main.batchValidate(resource("/pubkey.der"), dir.getPath(), "2.0", report, 2));
+
+        Map<String, String> status = new HashMap<String, String>();
+        for (String line : new String(out.toByteArray(), "UTF-8").split("\n")) {
+            String[] fields = line.split("\t");
+            assertEquals(line, 3, fields.length);
+            Long.parseLong(fields[1]);
+            status.put(new File(fields[2]).getName(), fields[0]);
+        }
+        assertEquals(5, status.size());
+        assertEquals("valid", status.get("valid.lic"));
+        assertEquals("expired", status.get("expired.lic"));
+        assertEquals("version-expired", status.get("version.lic"));
+        assertEquals("bad-signature", status.get("modified.lic"));
+        assertEquals("error", status.get("unsigned.lic"));
+    }
+
+}
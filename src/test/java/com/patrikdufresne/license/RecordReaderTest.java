@@ -0,0 +1,149 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link RecordReader}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class RecordReaderTest {
+
+    private static RecordReader csv(String data) {
+        return RecordReader.create(new StringReader(data), false);
+    }
+
+    private static RecordReader json(String data) {
+        return RecordReader.create(new StringReader(data), true);
+    }
+
+    private static void assertMalformed(RecordReader reader) {
+        try {
+            while (reader.next() != null) {
+                // Read until the error.
+            }
+            fail("exception expected");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void next_WithCsv_ReadRecords() throws IOException {
+        RecordReader reader = csv("name,email,licenseNumber\r\nJohn,john@example.com,1\n\nJane,,2");
+        Map<String, String> record = reader.next();
+        assertEquals("John", record.get("name"));
+        assertEquals("john@example.com", record.get("email"));
+        assertEquals("1", record.get("licenseNumber"));
+        // Blank lines are skipped and empty values ignored.
+        record = reader.next();
+        assertEquals("Jane", record.get("name"));
+        assertFalse(record.containsKey("email"));
+        assertEquals("2", record.get("licenseNumber"));
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void next_WithCsvQuotedValues_ReadRecords() throws IOException {
+        RecordReader reader = csv("name,email\n\"Doe, John\",\"a \"\"quoted\"\" value\"\n\"multi\nline\",x\n");
+        Map<String, String> record = reader.next();
+        assertEquals("Doe, John", record.get("name"));
+        assertEquals("a \"quoted\" value", record.get("email"));
+        record = reader.next();
+        assertEquals("multi\nline", record.get("name"));
+        assertEquals("x", record.get("email"));
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void next_WithMalformedCsv_ThrowException() {
+        assertMalformed(csv("name,email\n\"unterminated,x\n"));
+        assertMalformed(csv("name\na,b\n"));
+    }
+
+    @Test
+    public void next_WithJsonLines_ReadRecords() throws IOException {
+        RecordReader reader = json("{\"name\": \"John\", \"licenseNumber\": 12, \"email\": null}\n\n{ }\n{\"name\":\"Jane\"}");
+        Map<String, String> record = reader.next();
+        assertEquals("John", record.get("name"));
+        assertEquals("12", record.get("licenseNumber"));
+        assertFalse(record.containsKey("email"));
+        assertTrue(reader.next().isEmpty());
+        assertEquals("Jane", reader.next().get("name"));
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void next_WithJsonEscapes_ReadRecords() throws IOException {
+        RecordReader reader = json("{\"name\": \"a\\\"b\\\\c\\/d\\n\\t\\u00e9\"}");
+        assertEquals("a\"b\\c/d\n\t\u00e9", reader.next().get("name"));
+    }
+
+    @Test
+    public void next_WithMalformedJson_ThrowException() {
+        assertMalformed(json("[\"name\"]"));
+        assertMalformed(json("{\"name\" \"John\"}"));
+        assertMalformed(json("{\"name\": \"John\""));
+        assertMalformed(json("{\"name\": \"Jo\nhn\"}"));
+        assertMalformed(json("{\"name\": {\"first\": \"John\"}}"));
+        assertMalformed(json("{\"name\": \"\\x\"}"));
+        assertMalformed(json("{\"name\": \"\\u00zz\"}"));
+        assertMalformed(json("{\"name\": }"));
+        assertMalformed(json("{name: \"John\"}"));
+    }
+
+    @Test
+    public void next_WithMalformedJson_ReportLine() {
+        try {
+            RecordReader reader = json("{\"name\": \"John\"}\n{\"name\" \"Jane\"}");
+            reader.next();
+            reader.next();
+            fail("exception expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("line 2:"));
+        }
+    }
+
+    @Test
+    public void skipLine_WithMalformedRecord_ReadNextRecord() throws IOException {
+        RecordReader reader = json("{\"name\": \"a\"}\n{\"name\" \"b\", \"x\": 1}\n{\"name\": bad value}\n{\"name\": \"c\"}\n");
+        assertEquals("a", reader.next().get("name"));
+        assertMalformed(reader);
+        reader.skipLine();
+        assertMalformed(reader);
+        reader.skipLine();
+        assertEquals("c", reader.next().get("name"));
+        assertNull(reader.next());
+
+        reader = csv("name\na,b\n\"x\"y,z\nc\n");
+        assertMalformed(reader);
+        reader.skipLine();
+        assertMalformed(reader);
+        reader.skipLine();
+        assertEquals("c", reader.next().get("name"));
+        assertNull(reader.next());
+    }
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+/**
+ * This class test the {@link VersionMatcher}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class VersionMatcherTest {
+
+    @Test
+    public void matches_WithRegex_MatchWholeVersion() {
+        VersionMatcher matcher = VersionMatcher.compile("1\\.2\\..*");
+        assertTrue(matcher.matches("1.2.3"));
+        assertFalse(matcher.matches("1.3.0"));
+        assertFalse(matcher.matches(null));
+        // A plain version is still a regular expression.
+        assertTrue(VersionMatcher.compile("2.0").matches("2.0"));
+        assertFalse(VersionMatcher.compile("2.0").matches("2.0.1"));
+    }
+
+    @Test
+    public void matches_WithRange_CompareVersion() {
+        VersionMatcher matcher = VersionMatcher.compile(">=2.0 <3.0");
+        assertFalse(matcher.matches("1.9.9"));
+        assertTrue(matcher.matches("2"));
+        assertTrue(matcher.matches("2.0-beta"));
+        assertTrue(matcher.matches("2.10.1"));
+        assertFalse(matcher.matches("3.0"));
+        assertFalse(matcher.matches("3.0.1"));
+        assertFalse(matcher.matches("abc"));
+        assertFalse(matcher.matches(null));
+
+        assertTrue(VersionMatcher.compile("<=1.2").matches("1.2.0"));
+        assertFalse(VersionMatcher.compile("<=1.2").matches("1.2.1"));
+        assertTrue(VersionMatcher.compile(">1.2").matches("1.2.1"));
+        assertTrue(VersionMatcher.compile("=1.2").matches("1.2.0"));
+    }
+
+    @Test
+    public void matches_WithWildcard_MatchPrefix() {
+        VersionMatcher matcher = VersionMatcher.compile("2.x");
+        assertTrue(matcher.matches("2.0"));
+        assertTrue(matcher.matches("2.99.1"));
+        assertFalse(matcher.matches("3.0"));
+        assertFalse(matcher.matches("1.9"));
+
+        matcher = VersionMatcher.compile("2.1.X");
+        assertTrue(matcher.matches("2.1.7"));
+        assertFalse(matcher.matches("2.2"));
+        assertTrue(VersionMatcher.compile("x").matches("5.0"));
+    }
+
+    @Test
+    public void validate_WithVersionRange_ValidateVersion() throws LicenseException {
+        License license = new License();
+        license.setProperty(License.LICENSE_TYPE, License.TYPE_SINGLE_VERSION);
+        license.setProperty(License.VERSION, "2.x");
+        license.validate(new Date(), "2.5");
+        try {
+            license.validate(new Date(), "3.0");
+            fail("version should be expired");
+        } catch (LicenseVersionExpiredException e) {
+            // Expected
+        }
+        // Changing the version must recompile the constraint.
+        license.setProperty(License.VERSION, "3.x");
+        license.validate(new Date(), "3.0");
+    }
+
+}
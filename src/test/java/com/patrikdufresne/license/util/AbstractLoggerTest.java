@@ -0,0 +1,97 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test the {@link AbstractLogger} and the default logger of {@link Policy}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class AbstractLoggerTest {
+
+    /**
+     * Logger keeping the messages of level info and above.
+     */
+    private static class ListLogger extends AbstractLogger {
+
+        final List<String> messages = new ArrayList<String>();
+
+        @Override
+        public boolean isEnabled(String level) {
+            return severity(level) >= severity(INFO);
+        }
+
+        @Override
+        public void log(String level, String message) {
+            messages.add(level + " " + message);
+        }
+
+        @Override
+        public void log(String level, Throwable exception) {
+            messages.add(level + " " + exception.getMessage());
+        }
+
+    }
+
+    @After
+    public void resetLog() {
+        Policy.setLog(null);
+    }
+
+    @Test
+    public void log_WithTemplate_FormatMessage() {
+        ListLogger logger = new ListLogger();
+        logger.log(ILogger.INFO, "a {} b {}", "1", Integer.valueOf(2));
+        logger.log(ILogger.WARN, "no placeholder", "1");
+        logger.log(ILogger.ERROR, "{} {} {}", "1");
+        logger.log(ILogger.DEBUG, "disabled {}", new Object() {
+            @Override
+            public String toString() {
+                fail("argument formatted for a disabled level");
+                return null;
+            }
+        });
+        assertEquals("info a 1 b 2", logger.messages.get(0));
+        assertEquals("warn no placeholder", logger.messages.get(1));
+        assertEquals("error 1 {} {}", logger.messages.get(2));
+        assertEquals(3, logger.messages.size());
+    }
+
+    @Test
+    public void getLog_WithDefaultLogger_DisableDebug() {
+        ILogger logger = Policy.getLog();
+        assertSame(logger, Policy.getLog());
+        assertFalse(logger.isEnabled(ILogger.TRACE));
+        assertFalse(logger.isEnabled(ILogger.DEBUG));
+        assertTrue(logger.isEnabled(ILogger.WARN));
+
+        ListLogger custom = new ListLogger();
+        Policy.setLog(custom);
+        assertSame(custom, Policy.getLog());
+        Policy.setLog(null);
+        assertSame(logger, Policy.getLog());
+    }
+
+}
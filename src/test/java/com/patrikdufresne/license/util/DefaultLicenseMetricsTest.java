@@ -0,0 +1,101 @@
+/**
+ * Copyright(C) 2018 Patrik Dufresne Service Logiciel inc <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.license.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.patrikdufresne.license.License;
+import com.patrikdufresne.license.LicenseException;
+import com.patrikdufresne.license.LicenseManager;
+import com.patrikdufresne.license.util.LicenseMetrics.Outcome;
+import com.patrikdufresne.license.util.LicenseMetrics.Stage;
+
+/**
+ * Test the {@link DefaultLicenseMetrics}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class DefaultLicenseMetricsTest {
+
+    @After
+    public void resetMetrics() {
+        Policy.setMetrics(null);
+    }
+
+    @Test
+    public void record_WithDurations_ComputePercentile() {
+        DefaultLicenseMetrics metrics = new DefaultLicenseMetrics();
+        assertEquals(0, metrics.getPercentile(Stage.VERIFY, 50));
+        for (int i = 0; i < 99; i++) {
+            metrics.record(Stage.VERIFY, Outcome.SUCCESS, 1000);
+        }
+        metrics.record(Stage.VERIFY, Outcome.INVALID, 1000000);
+        assertEquals(99, metrics.getCount(Stage.VERIFY, Outcome.SUCCESS));
+        assertEquals(100, metrics.getCount(Stage.VERIFY));
+        assertEquals(0, metrics.getCount(Stage.SIGN));
+        assertEquals(1099, metrics.getTotalTime(Stage.VERIFY, TimeUnit.MICROSECONDS));
+        assertEquals(1023, metrics.getPercentile(Stage.VERIFY, 50));
+        assertEquals(1023, metrics.getPercentile(Stage.VERIFY, 99));
+        assertEquals(1048575, metrics.getPercentile(Stage.VERIFY, 100));
+        assertEquals(99, metrics.getHistogram(Stage.VERIFY)[10]);
+
+        metrics.reset();
+        assertEquals(0, metrics.getCount(Stage.VERIFY));
+    }
+
+    @Test
+    public void readLicense_WithMetrics_RecordEachStage() throws Exception {
+        DefaultLicenseMetrics metrics = new DefaultLicenseMetrics();
+        Policy.setMetrics(metrics);
+        LicenseManager manager = new LicenseManager(getClass().getResourceAsStream("/pubkey.der"), getClass().getResourceAsStream("/privkey.der"));
+        License license = new License();
+        license.setProperty(License.NAME, "A test name");
+        license.setProperty(License.LICENSE_TYPE, License.TYPE_TRIAL);
+        File file = new File("unittest.lic");
+        manager.writeLicense(license, file);
+        assertEquals(1, metrics.getCount(Stage.SIGN, Outcome.SUCCESS));
+
+        License read = manager.readLicenseFile(file);
+        assertEquals(1, metrics.getCount(Stage.PARSE, Outcome.SUCCESS));
+        assertEquals(1, metrics.getCount(Stage.VERIFY, Outcome.SUCCESS));
+        assertEquals(2, metrics.getCount(Stage.CANONICALIZE, Outcome.SUCCESS));
+        try {
+            read.validate(new Date(), null);
+            fail("exception expected");
+        } catch (LicenseException e) {
+            // Expected
+        }
+        assertEquals(1, metrics.getCount(Stage.VALIDATE, Outcome.EXPIRED));
+
+        try {
+            manager.readLicense("name=A test name\n".getBytes("UTF-8"));
+            fail("exception expected");
+        } catch (LicenseException e) {
+            // Expected
+        }
+        assertEquals(1, metrics.getCount(Stage.PARSE, Outcome.INVALID));
+        file.delete();
+    }
+
+}